@@ -0,0 +1,143 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Runs many commands against one loaded state of a repo. "gitlet batch
+ *  [file]" reads commands from the file, or from the standard input if
+ *  none is given, one per line, written as on a command line: arguments
+ *  are separated by spaces, and an argument containing spaces, such as a
+ *  commit message, is put in double quotes, within which \" and \\ stand
+ *  for " and \. Blank lines and lines starting with # are skipped.
+ *
+ *  The state of the repo is loaded once and only written at a line
+ *  reading "checkpoint" and at the end, rather than after each command.
+ *  Commits and blobs are still stored as they are made. A command that
+ *  fails prints its error, as it would on its own, and the batch goes on
+ *  with the state as it was before that command. If a command fails
+ *  unexpectedly, the state left by the commands before it is still
+ *  written before the batch stops.
+ *  @author Edan Bash
+ */
+class Batch {
+
+    /** Line that writes the state of the repo. */
+    private static final String CHECKPOINT = "checkpoint";
+
+    /** Starts a comment line. */
+    private static final String COMMENT = "#";
+
+    /** Quotes an argument. */
+    private static final char QUOTE = '"';
+
+    /** Escapes the next character in a quoted argument. */
+    private static final char ESCAPE = '\\';
+
+    /** Runs the batch command in ARGS on REPO. */
+    static void command(Repository repo, String[] args) {
+        if (args.length > 2) {
+            throw new GitletException("Incorrect operands.");
+        }
+        File file = (args.length == 2) ? new File(args[1]) : null;
+        if (file != null && !file.isFile()) {
+            throw new GitletException("File does not exist.");
+        }
+        repo.deferSaves();
+        try (BufferedReader in = new BufferedReader(open(file))) {
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                runLine(repo, line.trim());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            repo.checkpoint();
+        }
+    }
+
+    /** Runs the command on LINE against REPO. If it fails, whatever it
+     *  changed in the state of REPO is undone, so that the state written
+     *  at the next checkpoint is that left by the commands that
+     *  succeeded. */
+    private static void runLine(Repository repo, String line) {
+        if (line.isEmpty() || line.startsWith(COMMENT)) {
+            return;
+        } else if (line.equals(CHECKPOINT)) {
+            repo.checkpoint();
+            return;
+        }
+        Repository.Snapshot before = repo.snapshot();
+        try {
+            String[] args = split(line);
+            if (args[0].equals("batch") || args[0].equals("daemon")) {
+                throw new GitletException("Cannot run " + args[0]
+                        + " in a batch.");
+            }
+            Main.run(repo, args);
+        } catch (GitletException excp) {
+            repo.restore(before);
+            System.out.println(excp.getMessage());
+        } catch (RuntimeException excp) {
+            repo.restore(before);
+            throw excp;
+        }
+    }
+
+    /** Returns a reader of FILE, or of the standard input if FILE is
+     *  null. */
+    private static Reader open(File file) throws IOException {
+        if (file == null) {
+            return new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        }
+        return Files.newBufferedReader(file.toPath(),
+                StandardCharsets.UTF_8);
+    }
+
+    /** Returns the arguments on LINE, which is not empty. */
+    static String[] split(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder arg = null;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == QUOTE) {
+                    quoted = false;
+                } else if (c == ESCAPE && i + 1 < line.length()) {
+                    i += 1;
+                    arg.append(line.charAt(i));
+                } else {
+                    arg.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (arg != null) {
+                    result.add(arg.toString());
+                    arg = null;
+                }
+            } else {
+                if (arg == null) {
+                    arg = new StringBuilder();
+                }
+                if (c == QUOTE) {
+                    quoted = true;
+                } else {
+                    arg.append(c);
+                }
+            }
+        }
+        if (quoted) {
+            throw new GitletException("Unterminated quote.");
+        }
+        if (arg != null) {
+            result.add(arg.toString());
+        }
+        return result.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,91 @@
+package gitlet;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.log;
+import static gitlet.TestUtils.run;
+import static gitlet.TestUtils.write;
+
+/** Tests of running commands in a Batch.
+ *  @author Edan Bash
+ */
+public class BatchTest {
+
+    @Test
+    public void splitsArguments() {
+        assertArrayEquals(new String[] {"commit", "two words"},
+                          Batch.split("commit  \"two words\"\t"));
+        assertArrayEquals(new String[] {"say \"hi\" \\", "x"},
+                          Batch.split("\"say \\\"hi\\\" \\\\\" x"));
+        assertArrayEquals(new String[] {"ab c", ""},
+                          Batch.split("a\"b c\" \"\""));
+    }
+
+    @Test(expected = GitletException.class)
+    public void rejectsUnterminatedQuote() {
+        Batch.split("commit \"message");
+    }
+
+    @Test
+    public void runsCommands() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            write(dir, "a.txt", "a");
+            write(dir, "b.txt", "b");
+            write(dir, "commands", "# a comment\n\n"
+                  + "add a.txt\n"
+                  + "commit \"first commit\"\n"
+                  + "rm c.txt\n"
+                  + "batch\n"
+                  + "checkpoint\n"
+                  + "  add b.txt\n"
+                  + "commit \"say \\\"hi\\\"\"\n");
+            assertEquals("No reason to remove the file.\n"
+                         + "Cannot run batch in a batch.\n",
+                         run(dir, "batch", "commands"));
+            String[] log = run(dir, "log").split("\n");
+            assertEquals("say \"hi\"", log[3]);
+            assertEquals("first commit", log[8]);
+            assertEquals(3, log(dir).size());
+            assertEquals("File does not exist.\n",
+                         run(dir, "batch", "missing"));
+        });
+    }
+
+    @Test
+    public void undoesFailedCommands() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            for (char c = 'a'; c <= 't'; c += 1) {
+                write(dir, c + ".txt", "zero");
+                run(dir, "add", c + ".txt");
+            }
+            run(dir, "commit", "zero");
+            run(dir, "branch", "other");
+            write(dir, "m.txt", "master");
+            run(dir, "add", "m.txt");
+            run(dir, "commit", "master");
+            run(dir, "checkout", "other");
+            for (char c = 'a'; c <= 'u'; c += 1) {
+                write(dir, c + ".txt", "other");
+                run(dir, "add", c + ".txt");
+            }
+            run(dir, "commit", "other");
+            run(dir, "checkout", "master");
+            write(dir, "u.txt", "in the way");
+            write(dir, "commands", "merge other\nstatus\n");
+            String[] output = run(dir, "batch", "commands").split("\n");
+            assertEquals("There is an untracked file in the way; delete it, "
+                         + "or add and commit it first.", output[0]);
+            assertEquals("The merge staged nothing before it failed",
+                         "=== Staged Files ===", output[5]);
+            assertEquals("", output[6]);
+            assertEquals("No changes added to the commit.\n",
+                         run(dir, "commit", "nothing"));
+        });
+    }
+}
@@ -0,0 +1,307 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/** Reachability bitmaps: for some commits, the set of all commits they
+ *  can reach, so that the ancestors of any commit can be found by walking
+ *  back only as far as the nearest commits with bitmaps. Bit i stands for
+ *  the ith commit in the order they were made, which puts the ancestors of
+ *  a commit mostly in long runs, and bitmaps are compressed EWAH-style as
+ *  a sequence of marker words, each followed by literal words. A marker
+ *  holds a running bit in bit 0, the number of words that are all equal
+ *  to that bit in the next 32 bits, and the number of literal words that
+ *  follow it in the last 31 bits.
+ *
+ *  gc writes .gitlet/bitmaps along with the CommitGraph, giving a bitmap
+ *  to every branch head and every INTERVALth commit. The file starts with
+ *  the bytes "GBMP", its version, the checksum of the graph it belongs to
+ *  and the number of commits in that graph, followed by the bit of each
+ *  commit of the graph, in graph order. Then comes the number of bitmaps
+ *  and, for each, the position in the graph of its commit and its length
+ *  in words, and then the words of all the bitmaps. A file whose graph
+ *  checksum is not that of the current graph is ignored, as are bitmaps
+ *  for commits made since: they are simply walked.
+ *  @author Edan Bash
+ */
+class Bitmaps {
+
+    /** File holding the bitmaps. */
+    static final File BITMAPS = Utils.join(Main.CWD, ".gitlet", "bitmaps");
+
+    /** Every INTERVALth commit made gets a bitmap. */
+    static final int INTERVAL = 64;
+
+    /** Bytes that start the file. */
+    private static final byte[] MAGIC = {'G', 'B', 'M', 'P'};
+
+    /** Version of the file format. */
+    private static final int VERSION = 1;
+
+    /** Offset of the number of commits in the file. */
+    private static final int COUNT_START = MAGIC.length + Integer.BYTES
+        + Pack.ID_BYTES;
+
+    /** Number of bits in a word. */
+    private static final int WORD_BITS = Long.SIZE;
+
+    /** Position of the run length in a marker word. */
+    private static final int RUN_SHIFT = 1;
+
+    /** Position of the literal count in a marker word. */
+    private static final int LITERAL_SHIFT = 33;
+
+    /** Longest run a marker word can hold. */
+    private static final long MAX_RUN = (1L << 32) - 1;
+
+    /** Largest literal count a marker word can hold. */
+    private static final long MAX_LITERALS = (1L << 31) - 1;
+
+    /** The commits reachable from some commit. */
+    static class Reach {
+        /** The bits of the reachable commits that are in the graph. */
+        private final BitSet _bits = new BitSet();
+        /** The ids of the reachable commits that are not in the graph. */
+        private final HashSet<String> _extra = new HashSet<>();
+
+        /** Returns the number of commits reachable here but not from
+         *  OTHER. */
+        int countNotIn(Reach other) {
+            BitSet bits = (BitSet) _bits.clone();
+            bits.andNot(other._bits);
+            int result = bits.cardinality();
+            for (String id : _extra) {
+                if (!other._extra.contains(id)) {
+                    result += 1;
+                }
+            }
+            return result;
+        }
+    }
+
+    /** Returns the bitmaps of the current graph, or an empty set of
+     *  bitmaps if there are none for it. */
+    static Bitmaps load() {
+        byte[] checksum = CommitGraph.checksum();
+        if (checksum == null || !BITMAPS.isFile()) {
+            return new Bitmaps(null, new HashMap<>());
+        }
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(BITMAPS.toPath(),
+                 StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        byte[] magic = new byte[MAGIC.length];
+        byte[] graph = new byte[Pack.ID_BYTES];
+        file.get(0, magic);
+        file.get(MAGIC.length + Integer.BYTES, graph);
+        if (!Arrays.equals(magic, MAGIC)
+            || file.getInt(MAGIC.length) != VERSION
+            || !Arrays.equals(graph, checksum)) {
+            return new Bitmaps(null, new HashMap<>());
+        }
+        int count = file.getInt(COUNT_START);
+        int start = COUNT_START + Integer.BYTES;
+        IntBuffer bitIndex = file.slice(start, count * Integer.BYTES)
+            .asIntBuffer();
+        int dir = start + count * Integer.BYTES;
+        int bitmaps = file.getInt(dir);
+        HashMap<Integer, long[]> words = new HashMap<>();
+        int offset = dir + Integer.BYTES + bitmaps * 2 * Integer.BYTES;
+        for (int k = 0; k < bitmaps; k += 1) {
+            int entry = dir + Integer.BYTES + k * 2 * Integer.BYTES;
+            long[] bitmap = new long[file.getInt(entry + Integer.BYTES)];
+            file.slice(offset, bitmap.length * Long.BYTES).asLongBuffer()
+                .get(bitmap);
+            words.put(file.getInt(entry), bitmap);
+            offset += bitmap.length * Long.BYTES;
+        }
+        return new Bitmaps(bitIndex, words);
+    }
+
+    /** Writes bitmaps for the current graph, which must hold every commit
+     *  made, giving one to each of the commits HEADS. */
+    static void write(List<String> heads) {
+        List<String> ids = new ArrayList<>(
+                new LinkedHashSet<>(CommitIndex.all()));
+        int[] bitIndex = new int[ids.size()];
+        HashSet<Integer> selected = new HashSet<>();
+        for (String id : heads) {
+            selected.add(CommitGraph.position(id));
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += 1) {
+            int pos = CommitGraph.position(ids.get(i));
+            bitIndex[pos] = i;
+            if (i % INTERVAL == INTERVAL - 1 || selected.contains(pos)) {
+                order.add(pos);
+            }
+        }
+        Bitmaps bitmaps = new Bitmaps(IntBuffer.wrap(bitIndex),
+                new HashMap<>());
+        for (int pos : order) {
+            Reach reach = bitmaps.reach(ids.get(bitIndex[pos]));
+            bitmaps._bitmaps.put(pos, encode(reach._bits));
+        }
+        try {
+            File temp = File.createTempFile("tmp_bitmaps_", null,
+                    BITMAPS.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(
+                             Files.newOutputStream(temp.toPath())))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.write(CommitGraph.checksum());
+                out.writeInt(bitIndex.length);
+                for (int bit : bitIndex) {
+                    out.writeInt(bit);
+                }
+                out.writeInt(order.size());
+                for (int pos : order) {
+                    out.writeInt(pos);
+                    out.writeInt(bitmaps._bitmaps.get(pos).length);
+                }
+                for (int pos : order) {
+                    for (long word : bitmaps._bitmaps.get(pos)) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+            Files.move(temp.toPath(), BITMAPS.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Bitmaps where BITINDEX gives the bit of each commit of the graph,
+     *  or is null if bits are graph positions, and BITMAPS maps the graph
+     *  positions of commits to their compressed bitmaps. */
+    private Bitmaps(IntBuffer bitIndex, HashMap<Integer, long[]> bitmaps) {
+        _bitIndex = bitIndex;
+        _bitmaps = bitmaps;
+    }
+
+    /** Returns the commits reachable from the commit ID, including
+     *  itself, walking back until reaching commits with bitmaps. */
+    Reach reach(String id) {
+        Reach result = new Reach();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            String curr = stack.pop();
+            int pos = CommitGraph.position(curr);
+            if (pos == CommitGraph.NONE) {
+                if (!result._extra.add(curr)) {
+                    continue;
+                }
+            } else {
+                int bit = (_bitIndex == null) ? pos : _bitIndex.get(pos);
+                if (result._bits.get(bit)) {
+                    continue;
+                }
+                long[] bitmap = _bitmaps.get(pos);
+                if (bitmap != null) {
+                    or(bitmap, result._bits);
+                    continue;
+                }
+                result._bits.set(bit);
+            }
+            CommitGraph.Node node = CommitGraph.node(curr);
+            if (node.getParentID() != null) {
+                stack.push(node.getParentID());
+            }
+            if (node.getMergeParentID() != null) {
+                stack.push(node.getMergeParentID());
+            }
+        }
+        return result;
+    }
+
+    /** Returns BITS, compressed. */
+    static long[] encode(BitSet bits) {
+        long[] words = bits.toLongArray();
+        List<Long> result = new ArrayList<>();
+        int i = 0;
+        while (i < words.length) {
+            long clean = words[i];
+            long run = 0;
+            if (clean == 0 || clean == -1) {
+                while (i < words.length && words[i] == clean
+                       && run < MAX_RUN) {
+                    run += 1;
+                    i += 1;
+                }
+            }
+            int marker = result.size();
+            result.add(0L);
+            long literals = 0;
+            while (i < words.length && words[i] != 0 && words[i] != -1
+                   && literals < MAX_LITERALS) {
+                result.add(words[i]);
+                literals += 1;
+                i += 1;
+            }
+            long runBit = (run > 0 && clean == -1) ? 1 : 0;
+            result.set(marker, runBit | (run << RUN_SHIFT)
+                       | (literals << LITERAL_SHIFT));
+        }
+        long[] encoded = new long[result.size()];
+        for (int k = 0; k < encoded.length; k += 1) {
+            encoded[k] = result.get(k);
+        }
+        return encoded;
+    }
+
+    /** Sets in INTO every bit set in the compressed bitmap WORDS. */
+    static void or(long[] words, BitSet into) {
+        long word = 0;
+        int k = 0;
+        while (k < words.length) {
+            long marker = words[k];
+            k += 1;
+            long run = (marker >>> RUN_SHIFT) & MAX_RUN;
+            long literals = marker >>> LITERAL_SHIFT;
+            if ((marker & 1) != 0) {
+                into.set((int) (word * WORD_BITS),
+                         (int) ((word + run) * WORD_BITS));
+            }
+            word += run;
+            for (long n = 0; n < literals; n += 1, k += 1, word += 1) {
+                long bits = words[k];
+                while (bits != 0) {
+                    into.set((int) (word * WORD_BITS)
+                             + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    /** Bit of each commit of the graph, by position, or null if bits are
+     *  graph positions. */
+    private final IntBuffer _bitIndex;
+
+    /** Maps the graph positions of commits to their compressed bitmaps. */
+    private final HashMap<Integer, long[]> _bitmaps;
+}
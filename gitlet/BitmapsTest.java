@@ -0,0 +1,104 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.run;
+
+/** Tests of the compression of Bitmaps and of the counts of commits on
+ *  one branch and not another taken from them.
+ *  @author Edan Bash
+ */
+public class BitmapsTest {
+
+    /** Number of random bitmaps compressed. */
+    private static final int TRIALS = 200;
+
+    /** Largest number of bits in a random bitmap. */
+    private static final int MAX_BITS = 5000;
+
+    /** Asserts that BITS reads back from its compressed form. */
+    private static void check(BitSet bits) {
+        BitSet read = new BitSet();
+        Bitmaps.or(Bitmaps.encode(bits), read);
+        assertEquals(bits, read);
+    }
+
+    @Test
+    public void readsCompressedBitmapsBack() {
+        check(new BitSet());
+        BitSet bits = new BitSet();
+        bits.set(0, Long.SIZE * 3);
+        check(bits);
+        bits.set(Long.SIZE * 5 + 1);
+        bits.set(Long.SIZE * 9, Long.SIZE * 12 + 7);
+        check(bits);
+        bits.clear();
+        bits.set(Long.SIZE * 100);
+        check(bits);
+        assertEquals(2, Bitmaps.encode(bits).length);
+
+        Random random = new Random(0);
+        for (int t = 0; t < TRIALS; t += 1) {
+            bits = new BitSet();
+            int size = random.nextInt(MAX_BITS);
+            boolean on = random.nextBoolean();
+            for (int i = 0; i < size; i += 1 + random.nextInt(2 * Long.SIZE)) {
+                int next = Math.min(size, i + 1 + random.nextInt(Long.SIZE));
+                if (on) {
+                    bits.set(i, next);
+                } else if (random.nextInt(4) == 0) {
+                    bits.set(i);
+                }
+                on = !on;
+            }
+            check(bits);
+        }
+    }
+
+    /** Makes a commit with MESSAGE in DIR changing the file "f". */
+    private static void commit(File dir, String message) throws IOException {
+        Utils.writeContents(new File(dir, "f"), message);
+        run(dir, "add", "f");
+        run(dir, "commit", message);
+    }
+
+    @Test
+    public void countsCommitsOnOneBranchOnly() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            commit(dir, "m1");
+            run(dir, "branch", "other");
+            run(dir, "branch", "same");
+            commit(dir, "m2");
+            commit(dir, "m3");
+            run(dir, "checkout", "other");
+            commit(dir, "o1");
+            commit(dir, "o2");
+            run(dir, "checkout", "master");
+            String counts = "=== Branches ===\n*master\n"
+                + "other [ahead 2, behind 2]\nsame [ahead 0, behind 2]\n\n";
+            assertTrue(run(dir, "status", "--ahead-behind")
+                       .startsWith(counts));
+
+            run(dir, "gc");
+            assertTrue(new File(dir, ".gitlet/bitmaps").isFile());
+            assertTrue(run(dir, "status", "--ahead-behind")
+                       .startsWith(counts));
+
+            commit(dir, "m4");
+            run(dir, "checkout", "other");
+            commit(dir, "o3");
+            assertTrue(run(dir, "status", "--ahead-behind")
+                       .startsWith("=== Branches ===\n"
+                                   + "master [ahead 3, behind 3]\n*other\n"
+                                   + "same [ahead 0, behind 3]\n\n"));
+        });
+    }
+}
@@ -1,35 +1,67 @@
 package gitlet;
 
-import java.io.Serializable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Formatter;
 
-/** The blob object.
+/** Blobs hold the contents of tracked files. A blob is stored in the
+ *  object store as the raw bytes of the file and is identified by the
+ *  SHA-1 hash of those bytes, so every distinct content is stored exactly
+ *  once no matter how many files, branches or commits refer to it. Blobs
+ *  are hashed and copied through fixed-size buffers, so files of any size
+ *  and any encoding can be tracked without holding them in memory.
  *  @author Edan Bash
  */
-public class Blob implements Serializable {
+class Blob {
 
-    /** Number of blobs created. */
-    private static int blobNum = 0;
+    /** Size of the buffers used to stream blob contents. */
+    static final int BUFFER_SIZE = 1 << 16;
 
-    /** Constructor for blob object with NAME and CONTENT. */
-    public Blob(String content) {
-        _content = content;
-        _name = "Blob " + blobNum;
-        blobNum += 1;
+    /** Returns the id a blob holding CONTENT would have. */
+    static String idOf(byte[] content) {
+        MessageDigest md = newDigest();
+        md.update(content);
+        return toID(md);
     }
 
-    /** Returns string contents of the blob. */
-    public String getContents() {
-        return _content;
+    /** Returns the id a blob holding the contents of FILE would have,
+     *  reading FILE in bounded chunks. */
+    static String idOf(File file) {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+                md.update(buf, 0, n);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return toID(md);
     }
 
-    /** Returns name of the blob. */
-    public String getName() {
-        return _name;
+    /** Returns a SHA-1 digest that has been fed the blob header, ready
+     *  to be fed the blob contents. */
+    static MessageDigest newDigest() {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update("blob ".getBytes(StandardCharsets.UTF_8));
+            return md;
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
     }
 
-    /** Name of Blob. */
-    private String _name;
-
-    /** String content within Blob. */
-    private String _content;
+    /** Returns the hexadecimal id held by the digest MD. */
+    static String toID(MessageDigest md) {
+        Formatter result = new Formatter();
+        for (byte b : md.digest()) {
+            result.format("%02x", b);
+        }
+        return result.toString();
+    }
 }
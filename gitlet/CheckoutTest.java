@@ -0,0 +1,100 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.read;
+import static gitlet.TestUtils.run;
+import static gitlet.TestUtils.write;
+
+/** Tests of checking out branches.
+ *  @author Edan Bash
+ */
+public class CheckoutTest {
+
+    /** Message printed when an untracked file would be lost. */
+    private static final String IN_THE_WAY = "There is an untracked file "
+        + "in the way; delete it or add and commit it first.\n";
+
+    @Test
+    public void overwritesLocalChangesToTrackedFiles() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            write(dir, "a.txt", "one\n");
+            write(dir, "b.txt", "two\n");
+            run(dir, "add", "a.txt");
+            run(dir, "add", "b.txt");
+            run(dir, "commit", "both");
+            run(dir, "branch", "other");
+            write(dir, "c.txt", "three\n");
+            run(dir, "add", "c.txt");
+            run(dir, "commit", "third");
+
+            write(dir, "a.txt", "edited\n");
+            new File(dir, "b.txt").delete();
+            assertEquals("", run(dir, "checkout", "other"));
+            assertEquals("one\n", read(dir, "a.txt"));
+            assertEquals("two\n", read(dir, "b.txt"));
+            assertFalse(new File(dir, "c.txt").exists());
+        });
+    }
+
+    @Test
+    public void replacesDirectoryWithFile() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            run(dir, "branch", "other");
+            new File(dir, "d").mkdir();
+            write(dir, "d/x.txt", "in d\n");
+            run(dir, "add", "d/x.txt");
+            run(dir, "commit", "directory");
+            run(dir, "checkout", "other");
+            write(dir, "d", "file d\n");
+            run(dir, "add", "d");
+            run(dir, "commit", "file");
+
+            assertEquals("", run(dir, "checkout", "master"));
+            assertEquals("in d\n", read(dir, "d/x.txt"));
+            assertEquals("", run(dir, "checkout", "other"));
+            assertEquals("file d\n", read(dir, "d"));
+
+            run(dir, "checkout", "master");
+            write(dir, "d/y.txt", "untracked\n");
+            assertEquals(IN_THE_WAY, run(dir, "checkout", "other"));
+            assertEquals("in d\n", read(dir, "d/x.txt"));
+            new File(dir, "d/y.txt").delete();
+
+            run(dir, "checkout", "other");
+            new File(dir, "d").delete();
+            new File(dir, "d").mkdir();
+            write(dir, "d/x.txt", "untracked\n");
+            assertEquals(IN_THE_WAY, run(dir, "checkout", "master"));
+            new File(dir, "d/x.txt").delete();
+            assertEquals("", run(dir, "checkout", "master"));
+            assertEquals("in d\n", read(dir, "d/x.txt"));
+        });
+    }
+
+    @Test
+    public void restoresIdenticalDirectories() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            for (String name : new String[] {"d1", "d2"}) {
+                new File(dir, name).mkdir();
+                write(dir, name + "/f.txt", "same\n");
+                run(dir, "add", name + "/f.txt");
+            }
+            run(dir, "commit", "two identical directories");
+            run(dir, "branch", "other");
+            new File(dir, "d1/f.txt").delete();
+            new File(dir, "d2/f.txt").delete();
+            assertEquals("", run(dir, "checkout", "other"));
+            assertEquals("same\n", read(dir, "d1/f.txt"));
+            assertEquals("same\n", read(dir, "d2/f.txt"));
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The binary format of the metadata of a repo: commits, the staging
+ *  areas, branches and the StatCache. A record starts with four magic
+ *  bytes naming its kind and a version number, followed by its fields as
+ *  varints (seven bits a byte, least significant first, high bit set on
+ *  every byte but the last), strings as a varint length and that many
+ *  bytes of UTF-8, and ids as their Pack.ID_BYTES binary bytes.
+ *
+ *  Repos made by the first version of Gitlet, which stored the same data
+ *  with Java serialization, are converted to this format by Upgrade.
+ *  @author Edan Bash
+ */
+class Codec {
+
+    /** Magic bytes of a staging area. */
+    static final byte[] STAGE = {'G', 'S', 'T', 'G'};
+
+    /** Magic bytes of the table of branches. */
+    static final byte[] REFS = {'G', 'R', 'E', 'F'};
+
+    /** Bits in a byte of a varint that hold data. */
+    private static final int VARINT_BITS = 7;
+
+    /** Mask of the data bits in a byte of a varint. */
+    private static final int VARINT_MASK = 0x7f;
+
+    /** Marks a byte of a varint that is followed by more bytes. */
+    private static final int VARINT_MORE = 0x80;
+
+    /** Mask to read a byte as unsigned. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Version of the maps of ids written by writeIDs. */
+    private static final int IDS_VERSION = 1;
+
+    /** Writes the non-negative VALUE to OUT as a varint. */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~VARINT_MASK) != 0) {
+            out.write((int) (value & VARINT_MASK) | VARINT_MORE);
+            value >>>= VARINT_BITS;
+        }
+        out.write((int) value);
+    }
+
+    /** Returns the varint in DATA at POS[0], advancing POS[0] past it. */
+    static long readVarint(byte[] data, int[] pos) {
+        long result = 0;
+        for (int shift = 0;; shift += VARINT_BITS) {
+            int b = data[pos[0]] & BYTE_MASK;
+            pos[0] += 1;
+            result |= (long) (b & VARINT_MASK) << shift;
+            if ((b & VARINT_MORE) == 0) {
+                return result;
+            }
+        }
+    }
+
+    /** Writes MAP, from names to ids, to FILE as a record with MAGIC. */
+    static void writeIDs(File file, byte[] magic, Map<String, String> map) {
+        Writer out = new Writer(magic, IDS_VERSION);
+        out.writeVarint(map.size());
+        for (Map.Entry<String, String> entry : new TreeMap<>(map)
+                 .entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeID(entry.getValue());
+        }
+        Utils.writeContents(file, out.toByteArray());
+    }
+
+    /** Returns the map from names to ids in FILE, written by writeIDs with
+     *  MAGIC, or an empty map if FILE is empty. */
+    static HashMap<String, String> readIDs(File file, byte[] magic) {
+        byte[] data = Utils.readContents(file);
+        if (data.length == 0) {
+            return new HashMap<>();
+        }
+        Reader in = new Reader(data, magic, IDS_VERSION);
+        int size = (int) in.readVarint();
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = 0; i < size; i += 1) {
+            String name = in.readString();
+            result.put(name, in.readID());
+        }
+        return result;
+    }
+
+    /** Builds a record in memory. */
+    static class Writer {
+        /** A record with MAGIC and VERSION, with no fields yet. */
+        Writer(byte[] magic, int version) {
+            _out.write(magic, 0, magic.length);
+            writeVarint(version);
+        }
+
+        /** Writes the non-negative VALUE. */
+        void writeVarint(long value) {
+            Codec.writeVarint(_out, value);
+        }
+
+        /** Writes the string S. */
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            _out.write(bytes, 0, bytes.length);
+        }
+
+        /** Writes the hexadecimal ID in binary. */
+        void writeID(String id) {
+            _out.write(ObjectStore.toBinary(id), 0, Pack.ID_BYTES);
+        }
+
+        /** Returns the record. */
+        byte[] toByteArray() {
+            return _out.toByteArray();
+        }
+
+        /** The record so far. */
+        private final ByteArrayOutputStream _out =
+            new ByteArrayOutputStream();
+    }
+
+    /** Reads the fields of a record. */
+    static class Reader {
+        /** A reader of the record in DATA, which must start with MAGIC and
+         *  have a version no later than VERSION. */
+        Reader(byte[] data, byte[] magic, int version) {
+            _data = data;
+            if (data.length < magic.length
+                || !Arrays.equals(data, 0, magic.length, magic, 0,
+                                  magic.length)) {
+                throw new IllegalArgumentException("Unknown record.");
+            }
+            _pos[0] = magic.length;
+            _version = (int) readVarint();
+            if (_version > version) {
+                throw new IllegalArgumentException("Unsupported version.");
+            }
+        }
+
+        /** Returns the version of the record. */
+        int version() {
+            return _version;
+        }
+
+        /** Returns the next varint. */
+        long readVarint() {
+            return Codec.readVarint(_data, _pos);
+        }
+
+        /** Returns the next string. */
+        String readString() {
+            int length = (int) readVarint();
+            String result = new String(_data, _pos[0], length,
+                    StandardCharsets.UTF_8);
+            _pos[0] += length;
+            return result;
+        }
+
+        /** Returns the next id, in hexadecimal. */
+        String readID() {
+            String result = ObjectStore.toHex(_data, _pos[0]);
+            _pos[0] += Pack.ID_BYTES;
+            return result;
+        }
+
+        /** The record. */
+        private final byte[] _data;
+        /** Position of the next field in _data. */
+        private final int[] _pos = new int[1];
+        /** Version of the record. */
+        private final int _version;
+    }
+}
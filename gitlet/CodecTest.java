@@ -0,0 +1,173 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.run;
+
+/** Tests that every kind of Codec record reads back as it was written.
+ *  The stat cache is only kept in a repo, so it is tested by running
+ *  commands.
+ *  @author Edan Bash
+ */
+public class CodecTest {
+
+    /** Some ids. */
+    private static final String[] IDS = {
+        "0123456789abcdef0123456789abcdef01234567",
+        "fedcba9876543210fedcba9876543210fedcba98",
+        "00000000000000000000000000000000000000ff",
+    };
+
+    /** Time of the commits written, in milliseconds. */
+    private static final long TIME = 1792199211324L;
+
+    /** Age given to working files so that the stat cache trusts them. */
+    private static final long OLD = 60 * 1000;
+
+    @Test
+    public void readsVarintsBack() {
+        long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE,
+                         Long.MAX_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values) {
+            Codec.writeVarint(out, value);
+        }
+        byte[] data = out.toByteArray();
+        assertEquals(0, data[0]);
+        assertEquals(1, data[1]);
+        int[] pos = {0};
+        for (long value : values) {
+            assertEquals(value, Codec.readVarint(data, pos));
+        }
+        assertEquals(data.length, pos[0]);
+    }
+
+    @Test
+    public void readsFieldsBack() {
+        byte[] magic = {'T', 'E', 'S', 'T'};
+        Codec.Writer out = new Codec.Writer(magic, 2);
+        out.writeVarint(TIME);
+        out.writeString("h\u00e9llo\nw\u00f6rld");
+        out.writeString("");
+        out.writeID(IDS[0]);
+        byte[] data = out.toByteArray();
+
+        Codec.Reader in = new Codec.Reader(data, magic, 3);
+        assertEquals(2, in.version());
+        assertEquals(TIME, in.readVarint());
+        assertEquals("h\u00e9llo\nw\u00f6rld", in.readString());
+        assertEquals("", in.readString());
+        assertEquals(IDS[0], in.readID());
+        try {
+            new Codec.Reader(data, magic, 1);
+            fail("read a record of a later version");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("Unsupported version.", excp.getMessage());
+        }
+        try {
+            new Codec.Reader(data, Codec.STAGE, 2);
+            fail("read a record of another kind");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("Unknown record.", excp.getMessage());
+        }
+    }
+
+    @Test
+    public void readsMapsOfIDsBack() throws IOException {
+        File file = File.createTempFile("codec", null);
+        try {
+            HashMap<String, String> map = new HashMap<>();
+            assertEquals(map, Codec.readIDs(file, Codec.REFS));
+            Codec.writeIDs(file, Codec.REFS, map);
+            assertEquals(map, Codec.readIDs(file, Codec.REFS));
+            map.put("master", IDS[0]);
+            map.put("dir/file name.txt", IDS[1]);
+            map.put("\u00fcn\u00efcode", IDS[2]);
+            for (byte[] magic : new byte[][] {Codec.REFS, Codec.STAGE}) {
+                Codec.writeIDs(file, magic, map);
+                assertEquals(map, Codec.readIDs(file, magic));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readsCommitsBack() {
+        Commit parent = new Commit("parent", null, IDS[2], new Date(0));
+        Commit merged = Commit.fromBinary(IDS[1], parent.toBinary());
+        Commit commit = new Commit("a\nlong message", IDS[0], IDS[2],
+                                   new Date(TIME));
+        commit.setMergeParent(merged);
+        Commit read = Commit.fromBinary(IDS[2], commit.toBinary());
+        assertEquals(IDS[2], read.getHashCode());
+        assertEquals("a\nlong message", read.getMsg());
+        assertEquals(IDS[0], read.getParentID());
+        assertEquals(IDS[1], read.getMergeParentID());
+        assertEquals(TIME, read.getTimestamp());
+        assertEquals(IDS[2], read.getTree());
+        assertArrayEquals(commit.toBinary(), read.toBinary());
+
+        read = Commit.fromBinary(IDS[1], parent.toBinary());
+        assertNull(read.getParentID());
+        assertNull(read.getMergeParentID());
+        assertEquals("parent", read.getMsg());
+        assertEquals(0, read.getTimestamp());
+    }
+
+    @Test
+    public void readsTreesBack() {
+        Codec.Writer out = new Codec.Writer(new byte[] {'G', 'T', 'R', 'E'},
+                                            1);
+        out.writeVarint(2);
+        out.writeString("a.txt");
+        out.writeID(IDS[0]);
+        out.writeString("b.txt");
+        out.writeID(IDS[1]);
+        out.writeVarint(1);
+        out.writeString("dir");
+        out.writeID(IDS[2]);
+        byte[] data = out.toByteArray();
+        assertArrayEquals(data, Tree.fromBinary(data).toBinary());
+
+        out = new Codec.Writer(new byte[] {'G', 'T', 'F', 'N'}, 1);
+        out.writeVarint(1);
+        out.writeVarint(Tree.MAX_ENTRIES + 1);
+        out.writeVarint(2);
+        out.writeVarint(0);
+        out.writeID(IDS[0]);
+        out.writeVarint(5);
+        out.writeID(IDS[1]);
+        data = out.toByteArray();
+        assertArrayEquals(data, Tree.fromBinary(data).toBinary());
+    }
+
+    @Test
+    public void readsStatCacheBack() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            File file = new File(dir, "a.txt");
+            Utils.writeContents(file, "one\n");
+            file.setLastModified(System.currentTimeMillis() - OLD);
+            run(dir, "add", "a.txt");
+            run(dir, "commit", "first");
+            long mtime = file.lastModified();
+            File index = new File(dir, ".gitlet/index");
+            assertTrue(index.isFile());
+            Utils.writeContents(file, "two\n");
+            file.setLastModified(mtime);
+            assertFalse("the cached entry for a.txt was read back",
+                        run(dir, "status").contains("a.txt"));
+            index.delete();
+            assertTrue(run(dir, "status").contains("a.txt (modified)"));
+        });
+    }
+}
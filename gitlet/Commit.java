@@ -1,50 +1,128 @@
 package gitlet;
 
-import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Map;
 
 /** The commit object.
  *  @author Edan Bash
  */
-public class Commit implements Serializable {
+public class Commit {
+
+    /** Magic bytes of the binary form of a commit. */
+    private static final byte[] MAGIC = {'G', 'C', 'O', 'M'};
+
+    /** Version of the binary form of a commit. Version 1 listed every
+     *  file of the commit instead of naming its Tree. */
+    private static final int VERSION = 2;
 
     /** Date format for all commits. */
     private static final DateFormat DATE_FORMAT =
             new SimpleDateFormat("EEE MMM dd HH:mm:ss YYYY Z");
 
-    /** Constructor for Commit object with LOGMESSAGE AND PARENT.
-     * Contains BLOBS that assign tracked files to their contents.
-     * Created at time DATE. */
-    public Commit(String logMessage, Commit parent, HashMap<String,
-            Blob> blobs, Date date) {
+    /** Constructor for Commit object with LOGMESSAGE AND PARENT, the id
+     * of the parent commit. Tracks the files in the Tree with id TREE, or
+     * none if TREE is null. Created at time DATE. */
+    public Commit(String logMessage, String parent, String tree, Date date) {
         _logMessage = logMessage;
         _parent = parent;
         _mergeParent = null;
+        _tree = tree;
+        _timestamp = date.getTime();
+    }
+
+    /** A commit with id ID read from its binary form, IN. */
+    private Commit(String id, Codec.Reader in) {
+        _hashcode = id;
+        _timestamp = in.readVarint();
+        _generation = (int) in.readVarint();
+        int parents = (int) in.readVarint();
+        _parent = (parents > 0) ? in.readID() : null;
+        _mergeParent = (parents > 1) ? in.readID() : null;
+        _logMessage = in.readString();
+        if (in.version() > 1) {
+            _tree = in.readID();
+            return;
+        }
+        int size = (int) in.readVarint();
         _blobs = new HashMap<>();
-        for (Map.Entry elem: blobs.entrySet()) {
-            _blobs.put((String) elem.getKey(), (Blob) elem.getValue());
+        for (int i = 0; i < size; i += 1) {
+            String fileName = in.readString();
+            _blobs.put(fileName, in.readID());
+        }
+    }
+
+    /** Returns the commit with id ID stored as DATA, in the form written
+     * by toBinary. */
+    public static Commit fromBinary(String id, byte[] data) {
+        return new Commit(id, new Codec.Reader(data, MAGIC, VERSION));
+    }
+
+    /** Returns the binary form in which this commit is stored: the Codec
+     * record "GCOM" holding its time, its generation, the number of its
+     * parents and their ids, its log message, and the id of its Tree.
+     * Its id is not stored, as it is the name it is stored under. */
+    public byte[] toBinary() {
+        Codec.Writer out = new Codec.Writer(MAGIC, VERSION);
+        out.writeVarint(_timestamp);
+        out.writeVarint(_generation);
+        out.writeVarint((_parent == null) ? 0
+                : (_mergeParent == null) ? 1 : 2);
+        if (_parent != null) {
+            out.writeID(_parent);
+        }
+        if (_mergeParent != null) {
+            out.writeID(_mergeParent);
         }
-        _date = DATE_FORMAT.format(date);
+        out.writeString(_logMessage);
+        out.writeID(getTree());
+        return out.toByteArray();
     }
 
     /** Add files from ADDSTAGE and remove files in RMSTAGE for this
      * commit object. */
-    public void updateCommit(HashMap<String, Blob> addStage,
-                             HashMap<String, Blob> rmStage) {
+    public void updateCommit(HashMap<String, String> addStage,
+                             HashMap<String, String> rmStage) {
         if (addStage.size() == 0 && rmStage.size() == 0 && _parent != null) {
             throw new GitletException("No changes added to the commit.");
         }
-        for (Map.Entry elem: addStage.entrySet()) {
-            _blobs.put((String) elem.getKey(), (Blob) elem.getValue());
+        _tree = Tree.update(_tree, addStage, rmStage.keySet());
+        computeGeneration();
+        _hashcode = Utils.sha1(encode());
+    }
+
+    /** Sets the generation of this commit from those of its parents. */
+    private void computeGeneration() {
+        _generation = 1;
+        for (String parent : new String[] {_parent, _mergeParent}) {
+            if (parent != null) {
+                _generation = Math.max(_generation,
+                        ObjectStore.readCommit(parent).getGeneration() + 1);
+            }
         }
-        for (String elem: rmStage.keySet()) {
-            _blobs.remove(elem);
+    }
+
+    /** Returns the canonical encoding of this commit, from which its id
+     * is computed: its parent ids, its timestamp in milliseconds, the id
+     * of its Tree, a blank line, and its log message. It only names other
+     * objects by id, so it is small no matter how long the history is or
+     * how many files are tracked, and it does not depend on how Java
+     * happens to serialize the class. */
+    public byte[] encode() {
+        StringBuilder result = new StringBuilder();
+        if (_parent != null) {
+            result.append("parent ").append(_parent).append('\n');
+        }
+        if (_mergeParent != null) {
+            result.append("parent ").append(_mergeParent).append('\n');
         }
-        _hashcode = Utils.sha1(Utils.serialize(this));
+        result.append("time ").append(_timestamp).append('\n');
+        result.append("tree ").append(_tree).append('\n');
+        result.append('\n').append(_logMessage);
+        return result.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     /** Return log message of commit. */
@@ -52,44 +130,76 @@ public class Commit implements Serializable {
         return _logMessage;
     }
 
-    /** Return parent of commit. */
+    /** Return parent of commit, read from the object store. */
     public Commit getParent() {
+        return (_parent == null) ? null : ObjectStore.readCommit(_parent);
+    }
+
+    /** Return id of the parent of commit. */
+    public String getParentID() {
         return _parent;
     }
 
     /** Return date commit was created. */
     public String getDate() {
-        return _date;
+        return DATE_FORMAT.format(new Date(_timestamp));
     }
 
-    /** Return blobs associated with this commit. */
-    public HashMap<String, Blob> getBlobs() {
-        return _blobs;
+    /** Return time commit was created, in milliseconds since the epoch. */
+    public long getTimestamp() {
+        return _timestamp;
+    }
+
+    /** Returns the id of the Tree of the files tracked by this commit.
+     * Commits stored before there were trees list their files instead,
+     * and their trees are made and stored when first asked for. */
+    public synchronized String getTree() {
+        if (_tree == null) {
+            _tree = Tree.update(null, _blobs, Collections.emptyList());
+        }
+        return _tree;
     }
 
     /** Return true if commit tracks FILENAME. */
     public boolean contains(String fileName) {
-        return _blobs.get(fileName) != null;
+        return getBlobID(fileName) != null;
     }
 
-    /** Return Blob associated with FILENAME. */
-    public Blob getBlobFromFile(String fileName) {
-        return _blobs.get(fileName);
+    /** Return id of the Blob associated with FILENAME, a path in the
+     * working directory. */
+    public String getBlobID(String fileName) {
+        return (_blobs != null) ? _blobs.get(fileName)
+            : Tree.lookup(_tree, fileName);
     }
 
     /** Return file contents of FILENAME. */
-    public String getFileContents(String fileName) {
-        return _blobs.get(fileName).getContents();
+    public byte[] getFileContents(String fileName) {
+        return ObjectStore.readBlob(getBlobID(fileName));
     }
 
     /** Returns merge parent of this commit. */
     public Commit getMergeParent() {
+        return (_mergeParent == null) ? null
+                : ObjectStore.readCommit(_mergeParent);
+    }
+
+    /** Returns id of the merge parent of this commit. */
+    public String getMergeParentID() {
         return _mergeParent;
     }
 
-    /** Sets merge parent to COM for this commit. */
+    /** Sets merge parent to COM for this commit. Must be called
+     * before updateCommit, since the parent is part of the hash. */
     public void setMergeParent(Commit com) {
-        _mergeParent = com;
+        _mergeParent = com.getHashCode();
+    }
+
+    /** Returns the generation number of this commit: 1 for a commit
+     * without parents, and otherwise one more than the largest generation
+     * of its parents. A commit's ancestors all have smaller generations.
+     * It is derived from the parents, so it is not part of the hash. */
+    public int getGeneration() {
+        return _generation;
     }
 
     /** Returns true of COM and THIS have same hashcode. */
@@ -105,17 +215,27 @@ public class Commit implements Serializable {
     /** Log message of this commit. */
     private String _logMessage;
 
-    /** Parent of this commit. */
-    private Commit _parent;
+    /** Id of the parent of this commit. */
+    private String _parent;
+
+    /** Ids of the blobs associated with this commit, by path, for commits
+     * stored before there were trees, or null. Other commits only hold
+     * the id of their Tree, which shares all unchanged parts with the
+     * trees of their parents. */
+    private HashMap<String, String> _blobs;
+
+    /** Id of the Tree of this commit, or null if it was stored before
+     * there were trees and its tree has not been made. */
+    private String _tree;
 
-    /** Blobs associated with this commit. */
-    private HashMap<String, Blob> _blobs;
+    /** Time this commit was created, in milliseconds since the epoch. */
+    private final long _timestamp;
 
-    /** Date created of this commit. */
-    private final String _date;
+    /** Id of the merge parent of this commit. */
+    private String _mergeParent;
 
-    /** Merge parent of this commit. */
-    private Commit _mergeParent;
+    /** Generation number of this commit. */
+    private int _generation;
 
     /** Hashcode of this commit. */
     private String _hashcode;
@@ -0,0 +1,339 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/** The shape of the commit history, kept in .gitlet/commit-graph so that
+ *  walking it does not parse commits. The file starts with the bytes
+ *  "GCGR", its version and the number of commits, followed by a fanout
+ *  table like that of a Pack index, the sorted binary ids of the commits,
+ *  and then one fixed-width record per commit, in the same order: the
+ *  positions of its parent and merge parent (or -1), its generation
+ *  number and its time. Next come the PathFilter of the files each commit
+ *  changed from its parent: a table of where each commit's filter ends,
+ *  then the filters themselves. A SHA-1 checksum of everything before it
+ *  ends the file. The graph is written by gc; commits made since are not
+ *  in it and are read from the object store instead.
+ *  @author Edan Bash
+ */
+class CommitGraph {
+
+    /** File holding the graph. */
+    static final File GRAPH = Utils.join(Main.CWD, ".gitlet", "commit-graph");
+
+    /** Bytes that start the graph. */
+    private static final byte[] MAGIC = {'G', 'C', 'G', 'R'};
+
+    /** Version of the graph format. */
+    private static final int VERSION = 2;
+
+    /** Offset of the number of commits in the graph. */
+    private static final int COUNT_START = MAGIC.length + Integer.BYTES;
+
+    /** Offset of the fanout table in the graph. */
+    private static final int FANOUT_START = COUNT_START + Integer.BYTES;
+
+    /** Offset of the sorted ids in the graph. */
+    private static final int IDS_START = FANOUT_START
+        + Pack.FANOUT * Integer.BYTES;
+
+    /** Length of the record of one commit. */
+    private static final int RECORD_BYTES = 3 * Integer.BYTES + Long.BYTES;
+
+    /** Position recorded for a missing parent or commit. */
+    static final int NONE = -1;
+
+    /** Mask to read a byte as unsigned. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Radix of hexadecimal ids. */
+    private static final int HEX = 16;
+
+    /** The parents, generation and time of one commit. */
+    static class Node {
+        /** A node for commit ID with parents PARENT and MERGEPARENT (either
+         *  of which may be null), GENERATION and TIMESTAMP. */
+        Node(String id, String parent, String mergeParent, int generation,
+             long timestamp) {
+            _id = id;
+            _parent = parent;
+            _mergeParent = mergeParent;
+            _generation = generation;
+            _timestamp = timestamp;
+        }
+
+        /** Returns the id of the commit. */
+        String getID() {
+            return _id;
+        }
+
+        /** Returns the id of the parent of the commit, or null. */
+        String getParentID() {
+            return _parent;
+        }
+
+        /** Returns the id of the merge parent of the commit, or null. */
+        String getMergeParentID() {
+            return _mergeParent;
+        }
+
+        /** Returns the generation number of the commit. */
+        int getGeneration() {
+            return _generation;
+        }
+
+        /** Returns the time of the commit in milliseconds. */
+        long getTimestamp() {
+            return _timestamp;
+        }
+
+        /** Id of the commit. */
+        private final String _id;
+        /** Id of the parent, or null. */
+        private final String _parent;
+        /** Id of the merge parent, or null. */
+        private final String _mergeParent;
+        /** Generation number. */
+        private final int _generation;
+        /** Time in milliseconds. */
+        private final long _timestamp;
+    }
+
+    /** Returns the node of commit ID, from the graph if it is there and
+     *  otherwise from the commit itself. */
+    static Node node(String id) {
+        MappedByteBuffer graph = map();
+        int pos = (graph == null) ? NONE : position(graph, id);
+        if (pos == NONE) {
+            Commit com = ObjectStore.readCommit(id);
+            return new Node(id, com.getParentID(), com.getMergeParentID(),
+                    com.getGeneration(), com.getTimestamp());
+        }
+        int count = graph.getInt(COUNT_START);
+        int record = IDS_START + count * Pack.ID_BYTES + pos * RECORD_BYTES;
+        return new Node(id, idAt(graph, graph.getInt(record)),
+                idAt(graph, graph.getInt(record + Integer.BYTES)),
+                graph.getInt(record + 2 * Integer.BYTES),
+                graph.getLong(record + 3 * Integer.BYTES));
+    }
+
+    /** Returns false if the commit ID certainly has the same version of
+     *  PATH as its parent (or, for the initial commit, does not track
+     *  it). A true answer may be wrong. */
+    static boolean mayHaveChanged(String id, String path) {
+        MappedByteBuffer graph = map();
+        int pos = (graph == null) ? NONE : position(graph, id);
+        if (pos == NONE) {
+            return true;
+        }
+        int count = graph.getInt(COUNT_START);
+        int ends = IDS_START + count * (Pack.ID_BYTES + RECORD_BYTES);
+        int data = ends + count * Integer.BYTES;
+        int start = (pos == 0) ? 0
+            : graph.getInt(ends + (pos - 1) * Integer.BYTES);
+        int end = graph.getInt(ends + pos * Integer.BYTES);
+        return PathFilter.mightContain(graph, data + start, data + end,
+                path);
+    }
+
+    /** Returns the names of the files whose versions differ between COM
+     *  and its parent. */
+    static List<String> changedPaths(Commit com) {
+        List<String> result = new ArrayList<>();
+        Tree.diff((com.getParentID() == null) ? null
+                  : com.getParent().getTree(), com.getTree(), "", result);
+        return result;
+    }
+
+    /** Writes a graph of every commit in the CommitIndex. Each commit's
+     *  generation is the one stored with it, so the order in which the
+     *  CommitIndex lists commits does not matter. */
+    static void write() {
+        List<String> ids = new ArrayList<>(
+                new LinkedHashSet<>(CommitIndex.all()));
+        HashMap<String, Commit> commits = new HashMap<>();
+        for (String id : ids) {
+            commits.put(id, ObjectStore.readCommit(id));
+        }
+        Collections.sort(ids);
+        HashMap<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += 1) {
+            positions.put(ids.get(i), i);
+        }
+        try {
+            File temp = File.createTempFile("tmp_graph_", null,
+                    GRAPH.getParentFile());
+            MessageDigest md = newSHA1();
+            try (DataOutputStream out = new DataOutputStream(
+                     new DigestOutputStream(new BufferedOutputStream(
+                             Files.newOutputStream(temp.toPath())), md))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(ids.size());
+                int[] fanout = new int[Pack.FANOUT];
+                for (String id : ids) {
+                    fanout[Integer.parseInt(id.substring(0, 2), HEX)] += 1;
+                }
+                for (int i = 0, total = 0; i < Pack.FANOUT; i += 1) {
+                    total += fanout[i];
+                    out.writeInt(total);
+                }
+                for (String id : ids) {
+                    out.write(ObjectStore.toBinary(id));
+                }
+                for (String id : ids) {
+                    Commit com = commits.get(id);
+                    out.writeInt(positionOf(positions, com.getParentID()));
+                    out.writeInt(positionOf(positions,
+                            com.getMergeParentID()));
+                    out.writeInt(com.getGeneration());
+                    out.writeLong(com.getTimestamp());
+                }
+                List<byte[]> filters = new ArrayList<>();
+                int end = 0;
+                for (String id : ids) {
+                    byte[] filter = PathFilter.create(
+                            changedPaths(commits.get(id)));
+                    filters.add(filter);
+                    end += filter.length;
+                    out.writeInt(end);
+                }
+                for (byte[] filter : filters) {
+                    out.write(filter);
+                }
+                out.flush();
+                out.write(md.digest());
+            }
+            Files.move(temp.toPath(), GRAPH.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            _graph = null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the position of commit ID in the graph, or NONE if it is
+     *  not there. */
+    static int position(String id) {
+        MappedByteBuffer graph = map();
+        return (graph == null) ? NONE : position(graph, id);
+    }
+
+    /** Returns the SHA-1 checksum that ends the graph, which identifies
+     *  it, or null if there is no usable graph. */
+    static byte[] checksum() {
+        MappedByteBuffer graph = map();
+        if (graph == null) {
+            return null;
+        }
+        byte[] result = new byte[Pack.ID_BYTES];
+        graph.get(graph.capacity() - Pack.ID_BYTES, result);
+        return result;
+    }
+
+    /** Returns a new SHA-1 digest. */
+    private static MessageDigest newSHA1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the position of ID in POSITIONS, or NONE if ID is null. */
+    private static int positionOf(HashMap<String, Integer> positions,
+                                  String id) {
+        return (id == null) ? NONE : positions.get(id);
+    }
+
+    /** Returns the position of ID in GRAPH, or NONE if it is not there. */
+    private static int position(MappedByteBuffer graph, String id) {
+        byte[] key = ObjectStore.toBinary(id);
+        int first = key[0] & BYTE_MASK;
+        int lo = (first == 0) ? 0
+            : graph.getInt(FANOUT_START + (first - 1) * Integer.BYTES);
+        int hi = graph.getInt(FANOUT_START + first * Integer.BYTES);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareID(graph, mid, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid;
+            } else {
+                return mid;
+            }
+        }
+        return NONE;
+    }
+
+    /** Returns a value that is negative, zero or positive as the Kth id
+     *  in GRAPH is less than, equal to or greater than ID. */
+    private static int compareID(MappedByteBuffer graph, int k, byte[] id) {
+        int start = IDS_START + k * Pack.ID_BYTES;
+        for (int i = 0; i < Pack.ID_BYTES; i += 1) {
+            int diff = (graph.get(start + i) & BYTE_MASK)
+                - (id[i] & BYTE_MASK);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the id at position POS in GRAPH, or null if POS is NONE. */
+    private static String idAt(MappedByteBuffer graph, int pos) {
+        if (pos == NONE) {
+            return null;
+        }
+        byte[] id = new byte[Pack.ID_BYTES];
+        graph.get(IDS_START + pos * Pack.ID_BYTES, id);
+        return ObjectStore.toHex(id, 0);
+    }
+
+    /** Returns the graph, memory-mapped, or null if there is no usable
+     *  graph. */
+    private static MappedByteBuffer map() {
+        if (!GRAPH.isFile()) {
+            return null;
+        }
+        if (_graph == null || _graphModified != GRAPH.lastModified()) {
+            try (FileChannel channel = FileChannel.open(GRAPH.toPath(),
+                     StandardOpenOption.READ)) {
+                _graphModified = GRAPH.lastModified();
+                _graph = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        for (int i = 0; i < MAGIC.length; i += 1) {
+            if (_graph.get(i) != MAGIC[i]) {
+                return null;
+            }
+        }
+        return (_graph.getInt(MAGIC.length) == VERSION) ? _graph : null;
+    }
+
+    /** The mapped graph, or null if it has not been mapped. */
+    private static MappedByteBuffer _graph;
+
+    /** Modification time of the graph when it was mapped. */
+    private static long _graphModified;
+}
@@ -0,0 +1,188 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** Keeps track of the ids of all commits ever made and resolves
+ *  abbreviated ids to them. The ids are appended, one per line, to the
+ *  journal .gitlet/commits as commits are made. Every so often the
+ *  journal is sorted into the snapshot .gitlet/commit-index, which starts
+ *  with the bytes "GCIX", its version and the length of the journal it
+ *  covers, followed by a fanout table like that of a Pack index and the
+ *  sorted binary ids. A prefix is resolved by a binary search of the
+ *  memory-mapped snapshot plus a scan of the part of the journal written
+ *  since, which is kept short by rebuilding the snapshot whenever it
+ *  grows past REBUILD_THRESHOLD ids (and on every gc). The two files
+ *  are handled by a Journal, as are those of the MessageIndex.
+ *  @author Edan Bash
+ */
+class CommitIndex {
+
+    /** Journal of the ids of all commits, oldest first. */
+    static final File JOURNAL = Utils.join(Main.CWD, ".gitlet", "commits");
+
+    /** Sorted snapshot of the journal. */
+    static final File SNAPSHOT = Utils.join(Main.CWD, ".gitlet",
+            "commit-index");
+
+    /** Number of ids written to the journal since the snapshot was built
+     *  that causes it to be rebuilt. */
+    static final int REBUILD_THRESHOLD = 1024;
+
+    /** Bytes that start the snapshot. */
+    private static final byte[] MAGIC = {'G', 'C', 'I', 'X'};
+
+    /** Version of the snapshot format. */
+    private static final int VERSION = 1;
+
+    /** The journal and snapshot. */
+    private static final Journal FILES = new Journal(JOURNAL, SNAPSHOT,
+            MAGIC, VERSION);
+
+    /** Offset of the fanout table in the snapshot. */
+    private static final int FANOUT_START = FILES.bodyStart();
+
+    /** Offset of the sorted ids in the snapshot. */
+    private static final int IDS_START = FANOUT_START
+        + Pack.FANOUT * Integer.BYTES;
+
+    /** Length of one line of the journal. */
+    private static final int LINE_LENGTH = Utils.UID_LENGTH + 1;
+
+    /** Mask to read a byte as unsigned. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Radix of hexadecimal ids. */
+    private static final int HEX = 16;
+
+    /** Records that the commit ID has been made. */
+    static void add(String id) {
+        Utils.appendContents(JOURNAL, id, "\n");
+    }
+
+    /** Returns the ids of all commits ever made, oldest first. */
+    static List<String> all() {
+        return journalSince(0);
+    }
+
+    /** Returns the ids of all commits that start with PREFIX, in sorted
+     *  order. */
+    static List<String> resolve(String prefix) {
+        List<String> result = new ArrayList<>();
+        if (!ObjectStore.isHex(prefix)
+            || prefix.length() > Utils.UID_LENGTH) {
+            return result;
+        }
+        long covered = FILES.coverage();
+        if (FILES.length() - covered > REBUILD_THRESHOLD * LINE_LENGTH) {
+            rebuild();
+            covered = FILES.coverage();
+        }
+        if (covered > 0) {
+            searchSnapshot(prefix, result);
+        }
+        for (String id : journalSince(covered)) {
+            if (id.startsWith(prefix)) {
+                result.add(id);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Sorts every id in the journal into a new snapshot. */
+    static void rebuild() {
+        long length = FILES.length();
+        List<String> ids = journalSince(0);
+        Collections.sort(ids);
+        FILES.writeSnapshot(length, out -> {
+            int[] fanout = new int[Pack.FANOUT];
+            for (String id : ids) {
+                fanout[Integer.parseInt(id.substring(0, 2), HEX)] += 1;
+            }
+            for (int i = 0, total = 0; i < Pack.FANOUT; i += 1) {
+                total += fanout[i];
+                out.writeInt(total);
+            }
+            for (String id : ids) {
+                out.write(ObjectStore.toBinary(id));
+            }
+        });
+    }
+
+    /** Adds to RESULT the ids in the snapshot that start with PREFIX,
+     *  found by a binary search for the smallest id not less than
+     *  PREFIX. */
+    private static void searchSnapshot(String prefix, List<String> result) {
+        MappedByteBuffer snapshot = FILES.map();
+        byte[] key = ObjectStore.toBinary(padded(prefix));
+        int lo = 0, hi = fanout(snapshot, Pack.FANOUT - 1);
+        if (prefix.length() >= 2) {
+            int first = key[0] & BYTE_MASK;
+            lo = (first == 0) ? 0 : fanout(snapshot, first - 1);
+            hi = fanout(snapshot, first);
+        }
+        int end = hi;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareID(snapshot, mid, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        byte[] id = new byte[Pack.ID_BYTES];
+        for (int k = lo; k < end; k += 1) {
+            snapshot.get(IDS_START + k * Pack.ID_BYTES, id);
+            String hex = ObjectStore.toHex(id, 0);
+            if (!hex.startsWith(prefix)) {
+                break;
+            }
+            result.add(hex);
+        }
+    }
+
+    /** Returns PREFIX padded with zeros to the length of a full id. */
+    private static String padded(String prefix) {
+        char[] zeros = new char[Utils.UID_LENGTH - prefix.length()];
+        Arrays.fill(zeros, '0');
+        return prefix + new String(zeros);
+    }
+
+    /** Returns a value that is negative, zero or positive as the Kth id
+     *  in SNAPSHOT is less than, equal to or greater than ID. */
+    private static int compareID(MappedByteBuffer snapshot, int k,
+                                 byte[] id) {
+        int start = IDS_START + k * Pack.ID_BYTES;
+        for (int i = 0; i < Pack.ID_BYTES; i += 1) {
+            int diff = (snapshot.get(start + i) & BYTE_MASK)
+                - (id[i] & BYTE_MASK);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the Ith entry of the fanout table of SNAPSHOT. */
+    private static int fanout(MappedByteBuffer snapshot, int i) {
+        return snapshot.getInt(FANOUT_START + i * Integer.BYTES);
+    }
+
+    /** Returns the ids in the journal from byte OFFSET on. */
+    private static List<String> journalSince(long offset) {
+        return split(FILES.readSince(offset));
+    }
+
+    /** Returns the ids on the lines of IDS. */
+    private static List<String> split(String ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(ids.split("\n")));
+    }
+}
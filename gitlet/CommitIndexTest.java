@@ -0,0 +1,100 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.log;
+import static gitlet.TestUtils.run;
+import static gitlet.TestUtils.read;
+import static gitlet.TestUtils.write;
+
+/** Tests of the commands that take abbreviated commit ids, which are
+ *  resolved through the CommitIndex.
+ *  @author Edan Bash
+ */
+public class CommitIndexTest {
+
+    /** Number of commits made by each test. More commits than there are
+     *  hex digits means two of them start with the same digit. */
+    private static final int COMMITS = 17;
+
+    /** Number of the commits made before the index is rebuilt by gc, so
+     *  that the ids of the others are only in the journal. */
+    private static final int BEFORE_GC = 9;
+
+    /** Length of the abbreviated ids used. */
+    private static final int ABBREVIATED = 8;
+
+    /** Makes COMMITS commits in a new repo in DIR, in which f.txt reads
+     *  "0" through "16", running gc after the first BEFORE_GC. Returns
+     *  the ids of the commits, newest first, ending with the initial
+     *  commit. */
+    private static List<String> makeCommits(File dir) throws IOException {
+        run(dir, "init");
+        for (int i = 0; i < COMMITS; i += 1) {
+            if (i == BEFORE_GC) {
+                run(dir, "gc");
+            }
+            write(dir, "f.txt", Integer.toString(i));
+            run(dir, "add", "f.txt");
+            run(dir, "commit", "change " + i);
+        }
+        return log(dir);
+    }
+
+    @Test
+    public void resolvesAbbreviatedIds() throws IOException {
+        inTempDir(dir -> {
+            List<String> ids = makeCommits(dir);
+            assertEquals(COMMITS + 1, ids.size());
+            for (int i = 0; i < COMMITS; i += 1) {
+                String id = ids.get(COMMITS - 1 - i);
+                assertEquals("", run(dir, "checkout",
+                                     id.substring(0, ABBREVIATED), "--",
+                                     "f.txt"));
+                assertEquals(Integer.toString(i), read(dir, "f.txt"));
+            }
+            String first = ids.get(COMMITS - 1);
+            assertEquals("", run(dir, "reset", first));
+            assertEquals("0", read(dir, "f.txt"));
+            assertEquals(first, log(dir).get(0));
+        });
+    }
+
+    @Test
+    public void rejectsAmbiguousAndUnknownIds() throws IOException {
+        inTempDir(dir -> {
+            List<String> ids = makeCommits(dir);
+            String shared = null;
+            for (int i = 0; i < ids.size() && shared == null; i += 1) {
+                for (int j = i + 1; j < ids.size(); j += 1) {
+                    if (ids.get(i).charAt(0) == ids.get(j).charAt(0)) {
+                        shared = ids.get(i).substring(0, 1);
+                    }
+                }
+            }
+            assertNotNull(shared);
+            assertEquals("Ambiguous commit id.\n",
+                         run(dir, "checkout", shared, "--", "f.txt"));
+            assertEquals("Ambiguous commit id.\n", run(dir, "reset", shared));
+            String unknown = "0000000";
+            for (String id : ids) {
+                if (id.startsWith(unknown)) {
+                    unknown = "fffffff";
+                }
+            }
+            assertEquals("No commit with that id exists.\n",
+                         run(dir, "checkout", unknown, "--", "f.txt"));
+            assertEquals("No commit with that id exists.\n",
+                         run(dir, "reset", "not-hex"));
+            assertEquals("No commit with that id exists.\n",
+                         run(dir, "reset", "z".repeat(Utils.UID_LENGTH)));
+            assertEquals(Integer.toString(COMMITS - 1), read(dir, "f.txt"));
+        });
+    }
+}
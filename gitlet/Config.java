@@ -0,0 +1,114 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/** Repository settings, kept as NAME=VALUE lines in .gitlet/config.
+ *  Every setting is an integer with a default and an allowed range, so
+ *  an unset or missing config file behaves like a fresh repo.
+ *  @author Edan Bash
+ */
+class Config {
+
+    /** File holding the settings of the repo. */
+    static final File CONFIG = Utils.join(Main.CWD, ".gitlet", "config");
+
+    /** Deflate level used for new objects, from 0 (store only, fastest)
+     *  to 9 (smallest), or -1 for zlib's default. */
+    static final String COMPRESSION = "core.compression";
+
+    /** Largest number of parsed commits kept in memory at once. */
+    static final String COMMIT_CACHE = "core.commitCacheSize";
+
+    /** Largest number of parsed trees kept in memory at once. */
+    static final String TREE_CACHE = "core.treeCacheSize";
+
+    /** Number of threads used to hash or write working files, or 0 for
+     *  one per available processor. */
+    static final String WORKERS = "core.workers";
+
+    /** Maps each known setting to its default, minimum and maximum. */
+    private static final TreeMap<String, int[]> SETTINGS = new TreeMap<>();
+
+    static {
+        SETTINGS.put(COMPRESSION, new int[] {-1, -1, 9});
+        SETTINGS.put(COMMIT_CACHE, new int[] {1024, 0, Integer.MAX_VALUE});
+        SETTINGS.put(TREE_CACHE, new int[] {4096, 0, Integer.MAX_VALUE});
+        SETTINGS.put(WORKERS, new int[] {0, 0, 256});
+    }
+
+    /** Returns the value of setting NAME, or its default if unset. */
+    static int get(String name) {
+        int[] setting = setting(name);
+        String value = load().getProperty(name);
+        return (value == null) ? setting[0] : parse(name, value);
+    }
+
+    /** Sets NAME to VALUE and saves the config file. */
+    static void set(String name, String value) {
+        parse(name, value);
+        Properties props = load();
+        props.setProperty(name, value.trim());
+        try (OutputStream out = Files.newOutputStream(CONFIG.toPath())) {
+            props.store(out, null);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _props = props;
+        _propsModified = CONFIG.lastModified();
+    }
+
+    /** Returns VALUE as the value of setting NAME, checking that it is
+     *  an integer in the allowed range. */
+    private static int parse(String name, String value) {
+        int[] setting = setting(name);
+        int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Invalid value for %s.", name);
+        }
+        if (result < setting[1] || result > setting[2]) {
+            throw Utils.error("Invalid value for %s.", name);
+        }
+        return result;
+    }
+
+    /** Returns the default and range of NAME. */
+    private static int[] setting(String name) {
+        int[] setting = SETTINGS.get(name);
+        if (setting == null) {
+            throw new GitletException("No such setting.");
+        }
+        return setting;
+    }
+
+    /** Returns the settings stored in CONFIG, reading it again only if it
+     *  has changed since it was last read. */
+    private static Properties load() {
+        if (_props == null || _propsModified != CONFIG.lastModified()) {
+            Properties props = new Properties();
+            if (CONFIG.isFile()) {
+                try (InputStream in = Files.newInputStream(CONFIG.toPath())) {
+                    props.load(in);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+            _props = props;
+            _propsModified = CONFIG.lastModified();
+        }
+        return _props;
+    }
+
+    /** Settings read from CONFIG, or null if not yet read. */
+    private static Properties _props;
+
+    /** Modification time of CONFIG when it was last read. */
+    private static long _propsModified;
+}
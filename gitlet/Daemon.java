@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** An optional server that runs commands on behalf of other processes,
+ *  so that they pay neither for starting a JVM nor for loading the repo.
+ *  "gitlet daemon" listens on the Unix domain socket .gitlet/daemon.sock
+ *  until "gitlet daemon stop". It keeps one Repository, whose state is
+ *  reloaded only when the files holding it change, and with it the parsed
+ *  commits, open packs and mapped indexes, which check their files in the
+ *  same way. So commands run by other processes meanwhile are seen.
+ *  Commands run one at a time, in the directory the daemon started in.
+ *
+ *  A request is the arguments of a command, each followed by a zero byte,
+ *  after which the client shuts down its side of the connection. The
+ *  daemon answers with the output of the command and closes the
+ *  connection. Main forwards commands other than batch this way whenever
+ *  the socket exists, but any client can, e.g.
+ *  printf 'status\0' | nc -NU .gitlet/daemon.sock.
+ *  @author Edan Bash
+ */
+class Daemon {
+
+    /** Socket the daemon listens on. */
+    static final File SOCKET = Utils.join(Main.CWD, ".gitlet", "daemon.sock");
+
+    /** Ends each argument of a request. */
+    private static final byte SEPARATOR = 0;
+
+    /** Runs the daemon command in ARGS on REPO: with no operands, serves
+     *  requests until stopped; with "stop", stops the running daemon. */
+    static void command(Repository repo, String[] args) {
+        if (args.length == 1) {
+            serve(repo);
+        } else if (args.length == 2 && args[1].equals("stop")) {
+            if (!forward(args)) {
+                throw new GitletException("No daemon is running.");
+            }
+        } else {
+            throw new GitletException("Incorrect operands.");
+        }
+    }
+
+    /** Sends the command in ARGS to the running daemon and copies its
+     *  output to System.out. Returns false, doing nothing, if no daemon is
+     *  running. */
+    static boolean forward(String... args) {
+        if (!SOCKET.exists()) {
+            return false;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(address());
+        } catch (IOException excp) {
+            return false;
+        }
+        try (channel) {
+            OutputStream out = Channels.newOutputStream(channel);
+            for (String arg : args) {
+                out.write(arg.getBytes(StandardCharsets.UTF_8));
+                out.write(SEPARATOR);
+            }
+            out.flush();
+            channel.shutdownOutput();
+            Channels.newInputStream(channel).transferTo(System.out);
+            System.out.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return true;
+    }
+
+    /** Serves requests with REPO until a "daemon stop" request. */
+    private static void serve(Repository repo) {
+        if (forward()) {
+            throw new GitletException("A daemon is already running.");
+        }
+        SOCKET.delete();
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address());
+            Repository current = repo;
+            while (current != null) {
+                try (SocketChannel client = server.accept()) {
+                    current = handle(current, client);
+                } catch (IOException excp) {
+                    continue;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            SOCKET.delete();
+        }
+    }
+
+    /** Runs the request read from CLIENT on REPO, sending its output back.
+     *  Returns the Repository to run the next request on, or null if the
+     *  request stops the daemon. A command that fails may have changed the
+     *  state of REPO without saving it, so it is replaced by a fresh
+     *  Repository, which will load the state again. An unexpected error
+     *  is sent to CLIENT as the one line that names it, and its stack
+     *  trace goes to the daemon's own System.err. */
+    private static Repository handle(Repository repo, SocketChannel client)
+        throws IOException {
+        String[] args = readRequest(Channels.newInputStream(client));
+        if (args.length == 0) {
+            return repo;
+        } else if (Arrays.equals(args, new String[] {"daemon", "stop"})) {
+            return null;
+        }
+        PrintStream stdout = System.out;
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                Channels.newOutputStream(client)));
+        System.setOut(out);
+        try {
+            if (args[0].equals("daemon")) {
+                throw new GitletException("A daemon is already running.");
+            } else if (args[0].equals("batch")) {
+                throw new GitletException("Cannot run batch in the daemon.");
+            }
+            Main.run(repo, args);
+            return repo;
+        } catch (GitletException excp) {
+            out.println(excp.getMessage());
+            return new Repository();
+        } catch (RuntimeException excp) {
+            out.println(excp);
+            excp.printStackTrace();
+            return new Repository();
+        } finally {
+            System.setOut(stdout);
+            out.flush();
+        }
+    }
+
+    /** Returns the arguments of the request read from IN. */
+    private static String[] readRequest(InputStream in) throws IOException {
+        byte[] data = in.readAllBytes();
+        List<String> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= data.length; i += 1) {
+            if (i == data.length ? i > start : data[i] == SEPARATOR) {
+                result.add(new String(data, start, i - start,
+                        StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /** Returns the address of SOCKET. */
+    private static UnixDomainSocketAddress address() {
+        return UnixDomainSocketAddress.of(SOCKET.toPath());
+    }
+}
@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/** Binary deltas between two versions of a blob. A delta starts with the
+ *  lengths of the base and of the result, followed by instructions that
+ *  each either COPY a run of bytes out of the base or INSERT literal bytes
+ *  carried in the delta. All numbers are written as Codec varints.
+ *
+ *  Deltas are found by indexing every BLOCK-byte block of the base by a
+ *  hash of its bytes, then sliding a rolling hash of the same width over
+ *  the target; each hit is checked and extended in both directions and
+ *  becomes a COPY, and the bytes in between become INSERTs.
+ *  @author Edan Bash
+ */
+class Delta {
+
+    /** Opcode of an instruction that inserts literal bytes. */
+    private static final int INSERT = 0;
+
+    /** Opcode of an instruction that copies bytes from the base. */
+    private static final int COPY = 1;
+
+    /** Width of the blocks of the base that are indexed. */
+    private static final int BLOCK = 16;
+
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 31;
+
+    /** PRIME raised to the power BLOCK - 1, to roll bytes out. */
+    private static final int TOP;
+
+    /** Maximum number of base blocks compared for one hash hit. */
+    private static final int MAX_CHAIN = 16;
+
+    /** Mask to read a byte as unsigned. */
+    private static final int BYTE_MASK = 0xff;
+
+    static {
+        int top = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            top *= PRIME;
+        }
+        TOP = top;
+    }
+
+    /** Returns a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Codec.writeVarint(out, base.length);
+        Codec.writeVarint(out, target.length);
+        int blocks = base.length / BLOCK;
+        if (blocks == 0 || target.length < BLOCK) {
+            insert(out, target, 0, target.length);
+            return out.toByteArray();
+        }
+        int mask = Integer.highestOneBit(blocks) * 2 - 1;
+        int[] heads = new int[mask + 1];
+        int[] next = new int[blocks];
+        Arrays.fill(heads, -1);
+        for (int b = blocks - 1; b >= 0; b -= 1) {
+            int h = hash(base, b * BLOCK) & mask;
+            next[b] = heads[h];
+            heads[h] = b;
+        }
+
+        int pending = 0, i = 0;
+        int h = hash(target, 0);
+        while (i + BLOCK <= target.length) {
+            int bestOff = -1, bestLen = 0, chain = 0;
+            for (int b = heads[h & mask]; b != -1 && chain < MAX_CHAIN;
+                 b = next[b], chain += 1) {
+                int len = matchLength(base, b * BLOCK, target, i);
+                if (len > bestLen) {
+                    bestOff = b * BLOCK;
+                    bestLen = len;
+                }
+            }
+            if (bestLen < BLOCK) {
+                if (i + BLOCK < target.length) {
+                    h = (h - (target[i] & BYTE_MASK) * TOP) * PRIME
+                        + (target[i + BLOCK] & BYTE_MASK);
+                }
+                i += 1;
+                continue;
+            }
+            while (bestOff > 0 && i > pending
+                   && base[bestOff - 1] == target[i - 1]) {
+                bestOff -= 1;
+                i -= 1;
+                bestLen += 1;
+            }
+            insert(out, target, pending, i - pending);
+            out.write(COPY);
+            Codec.writeVarint(out, bestOff);
+            Codec.writeVarint(out, bestLen);
+            i += bestLen;
+            pending = i;
+            if (i + BLOCK <= target.length) {
+                h = hash(target, i);
+            }
+        }
+        insert(out, target, pending, target.length - pending);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        if (Codec.readVarint(delta, pos) != base.length) {
+            throw new IllegalArgumentException("delta does not fit base");
+        }
+        byte[] result = new byte[(int) Codec.readVarint(delta, pos)];
+        int n = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]];
+            pos[0] += 1;
+            if (op == COPY) {
+                int off = (int) Codec.readVarint(delta, pos);
+                int len = (int) Codec.readVarint(delta, pos);
+                System.arraycopy(base, off, result, n, len);
+                n += len;
+            } else {
+                int len = (int) Codec.readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], result, n, len);
+                pos[0] += len;
+                n += len;
+            }
+        }
+        if (n != result.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /** Returns the hash of the BLOCK bytes of DATA starting at OFF. */
+    private static int hash(byte[] data, int off) {
+        int h = 0;
+        for (int k = 0; k < BLOCK; k += 1) {
+            h = h * PRIME + (data[off + k] & BYTE_MASK);
+        }
+        return h;
+    }
+
+    /** Returns the number of equal bytes of BASE starting at BASEOFF and
+     *  of TARGET starting at TARGETOFF. */
+    private static int matchLength(byte[] base, int baseOff,
+                                   byte[] target, int targetOff) {
+        int len = 0;
+        while (baseOff + len < base.length && targetOff + len < target.length
+               && base[baseOff + len] == target[targetOff + len]) {
+            len += 1;
+        }
+        return len;
+    }
+
+    /** Writes an instruction to OUT inserting the LEN bytes of DATA that
+     *  start at OFF, if there are any. */
+    private static void insert(ByteArrayOutputStream out, byte[] data,
+                               int off, int len) {
+        if (len > 0) {
+            out.write(INSERT);
+            Codec.writeVarint(out, len);
+            out.write(data, off, len);
+        }
+    }
+}
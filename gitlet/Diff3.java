@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Three-way merges of the lines of a file. The changes each side made
+ *  to the base version are found with LineDiff, and the base is then
+ *  walked in order. A run of lines changed on one side only takes that
+ *  side's version. Where changes from both sides overlap or touch, the
+ *  run from the start of the first of them to the end of the last is
+ *  taken from either side if both made the same change, and otherwise is
+ *  written as a conflict between markers, with the current version first.
+ *  Lines neither side changed are copied as they are.
+ *  @author Edan Bash
+ */
+class Diff3 {
+
+    /** Starts a conflict, before the current version. */
+    private static final byte[] OURS =
+        "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Separates the two versions of a conflict. */
+    private static final byte[] SEPARATOR =
+        "=======\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Ends a conflict, after the given version. */
+    private static final byte[] THEIRS =
+        ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Newline added to a version of a conflict that lacks one at the end
+     *  of the file, so that the marker after it starts a line. */
+    private static final byte[] NEWLINE = {'\n'};
+
+    /** Writes to OUT the result of merging the changes made to BASE in
+     *  OURS and in THEIRS. Returns true if they merged without
+     *  conflicts. */
+    static boolean merge(LineDiff.Lines base, LineDiff.Lines ours,
+                         LineDiff.Lines theirs, OutputStream out) {
+        List<LineDiff.Edit> mine = LineDiff.diff(base, ours);
+        List<LineDiff.Edit> yours = LineDiff.diff(base, theirs);
+        boolean clean = true;
+        int pos = 0;
+        int i = 0;
+        int j = 0;
+        while (i < mine.size() || j < yours.size()) {
+            int start = Math.min(
+                (i < mine.size()) ? mine.get(i).getBeginA() : base.size(),
+                (j < yours.size()) ? yours.get(j).getBeginA() : base.size());
+            base.write(out, pos, start);
+            int end = start;
+            int firstMine = i;
+            int firstYours = j;
+            boolean grew = true;
+            while (grew) {
+                grew = false;
+                while (i < mine.size() && mine.get(i).getBeginA() <= end) {
+                    end = Math.max(end, mine.get(i).getEndA());
+                    i += 1;
+                    grew = true;
+                }
+                while (j < yours.size() && yours.get(j).getBeginA() <= end) {
+                    end = Math.max(end, yours.get(j).getEndA());
+                    j += 1;
+                    grew = true;
+                }
+            }
+            int[] mineRange = range(mine, firstMine, i, start, end);
+            int[] yoursRange = range(yours, firstYours, j, start, end);
+            if (firstYours == j) {
+                ours.write(out, mineRange[0], mineRange[1]);
+            } else if (firstMine == i
+                       || ours.same(mineRange[0], mineRange[1], theirs,
+                                    yoursRange[0], yoursRange[1])) {
+                theirs.write(out, yoursRange[0], yoursRange[1]);
+            } else {
+                clean = false;
+                conflict(out, ours, mineRange, theirs, yoursRange);
+            }
+            pos = end;
+        }
+        base.write(out, pos, base.size());
+        return clean;
+    }
+
+    /** Returns the start and end of the lines that the lines of the base
+     *  from START to END became on one side, where EDITS from FIRST up to
+     *  LAST are that side's changes among them, or null if it made
+     *  none. */
+    private static int[] range(List<LineDiff.Edit> edits, int first,
+                               int last, int start, int end) {
+        if (first == last) {
+            return null;
+        }
+        LineDiff.Edit begin = edits.get(first);
+        LineDiff.Edit finish = edits.get(last - 1);
+        return new int[] {begin.getBeginB() - (begin.getBeginA() - start),
+                          finish.getEndB() + (end - finish.getEndA())};
+    }
+
+    /** Writes to OUT a conflict between the lines MINE of OURS and the
+     *  lines YOURS of THEIRS. */
+    private static void conflict(OutputStream out, LineDiff.Lines ours,
+                                 int[] mine, LineDiff.Lines theirs,
+                                 int[] yours) {
+        write(out, OURS);
+        ours.write(out, mine[0], mine[1]);
+        if (mine[1] > mine[0] && !ours.endsWithNewline(mine[1] - 1)) {
+            write(out, NEWLINE);
+        }
+        write(out, SEPARATOR);
+        theirs.write(out, yours[0], yours[1]);
+        if (yours[1] > yours[0] && !theirs.endsWithNewline(yours[1] - 1)) {
+            write(out, NEWLINE);
+        }
+        write(out, THEIRS);
+    }
+
+    /** Writes BYTES to OUT. */
+    private static void write(OutputStream out, byte[] bytes) {
+        try {
+            out.write(bytes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.LineDiffTest.lines;
+
+/** Tests of Diff3.
+ *  @author Edan Bash
+ */
+public class Diff3Test {
+
+    /** Returns the result of merging the changes made to BASE in OURS and
+     *  THEIRS, with "!" in front if they conflicted. */
+    private static String merge(String base, String ours, String theirs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean clean = Diff3.merge(lines(base), lines(ours), lines(theirs),
+                                    out);
+        return (clean ? "" : "!")
+            + new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void mergesEditsThatDoNotOverlap() {
+        assertEquals("A\nb\nc\nD\n",
+                     merge("a\nb\nc\nd\n", "A\nb\nc\nd\n", "a\nb\nc\nD\n"));
+        assertEquals("a\nx\nb\nc\n",
+                     merge("a\nb\nc\n", "a\nx\nb\nc\n", "a\nb\nc\n"));
+        assertEquals("a\nc\ny\n",
+                     merge("a\nb\nc\n", "a\nc\n", "a\nb\nc\ny\n"));
+        assertEquals("a\nB\nc\n",
+                     merge("a\nb\nc\n", "a\nB\nc\n", "a\nB\nc\n"));
+    }
+
+    @Test
+    public void marksOverlappingEdits() {
+        assertEquals("!a\n<<<<<<< HEAD\nB\nC\n=======\nb\nX\n>>>>>>>\nd\n",
+                     merge("a\nb\nc\nd\n", "a\nB\nC\nd\n", "a\nb\nX\nd\n"));
+    }
+
+    @Test
+    public void marksInsertionsAtSamePoint() {
+        assertEquals("!a\n<<<<<<< HEAD\nx\n=======\ny\n>>>>>>>\nb\n",
+                     merge("a\nb\n", "a\nx\nb\n", "a\ny\nb\n"));
+        assertEquals("a\nx\nb\n",
+                     merge("a\nb\n", "a\nx\nb\n", "a\nx\nb\n"));
+    }
+
+    @Test
+    public void marksDeletionAgainstChange() {
+        assertEquals("!a\n<<<<<<< HEAD\n=======\nB\n>>>>>>>\nc\n",
+                     merge("a\nb\nc\n", "a\nc\n", "a\nB\nc\n"));
+        assertEquals("!a\n<<<<<<< HEAD\nB\n=======\n>>>>>>>\nc\n",
+                     merge("a\nb\nc\n", "a\nB\nc\n", "a\nc\n"));
+    }
+
+    @Test
+    public void handlesMissingNewlineAtEnd() {
+        assertEquals("A\nb", merge("a\nb", "A\nb", "a\nb"));
+        assertEquals("A\nb\nc\n",
+                     merge("a\nb\nc", "A\nb\nc", "a\nb\nc\n"));
+        assertEquals("!a\n<<<<<<< HEAD\nx\n=======\ny\n>>>>>>>\n",
+                     merge("a\nb", "a\nx", "a\ny"));
+    }
+}
@@ -0,0 +1,144 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/** The files of an index that is kept as commits are made: a journal,
+ *  to which a line is appended for each commit, and a snapshot of the
+ *  journal in a form that is quick to search, rebuilt every so often.
+ *  A snapshot starts with magic bytes, a version and the length of the
+ *  journal it covers, so a search reads the snapshot and then only the
+ *  part of the journal written since; what follows the header is up to
+ *  the index. Used by CommitIndex and MessageIndex.
+ *  @author Edan Bash
+ */
+class Journal {
+
+    /** Writes the body of a snapshot. */
+    interface Body {
+        /** Writes the body of the snapshot to OUT. */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** The journal JOURNAL with the snapshot SNAPSHOT, which starts with
+     *  the bytes MAGIC and VERSION. */
+    Journal(File journal, File snapshot, byte[] magic, int version) {
+        _journal = journal;
+        _snapshot = snapshot;
+        _magic = magic;
+        _version = version;
+    }
+
+    /** Returns the offset at which the body of the snapshot starts. */
+    int bodyStart() {
+        return _magic.length + Integer.BYTES + Long.BYTES;
+    }
+
+    /** Returns the length of the journal, or 0 if there is none. */
+    long length() {
+        return _journal.length();
+    }
+
+    /** Returns the length of the journal covered by the snapshot, or 0
+     *  if there is no usable snapshot. */
+    long coverage() {
+        if (!_snapshot.isFile()) {
+            return 0;
+        }
+        MappedByteBuffer snapshot = map();
+        for (int i = 0; i < _magic.length; i += 1) {
+            if (snapshot.get(i) != _magic[i]) {
+                return 0;
+            }
+        }
+        if (snapshot.getInt(_magic.length) != _version) {
+            return 0;
+        }
+        long covered = snapshot.getLong(_magic.length + Integer.BYTES);
+        return (covered > _journal.length()) ? 0 : covered;
+    }
+
+    /** Returns the text of the journal from byte OFFSET on, which is
+     *  empty if there is no journal. */
+    String readSince(long offset) {
+        if (!_journal.isFile()) {
+            return "";
+        }
+        try (RandomAccessFile in = new RandomAccessFile(_journal, "r")) {
+            byte[] rest = new byte[(int) (in.length() - offset)];
+            in.seek(offset);
+            in.readFully(rest);
+            return new String(rest, StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Replaces the snapshot by one covering the first COVERED bytes of
+     *  the journal, whose body BODY writes. The snapshot is written to a
+     *  temporary file and moved into place, so readers never see part of
+     *  one. */
+    void writeSnapshot(long covered, Body body) {
+        try {
+            File temp = File.createTempFile("tmp_index_", null,
+                    _snapshot.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(
+                             Files.newOutputStream(temp.toPath())))) {
+                out.write(_magic);
+                out.writeInt(_version);
+                out.writeLong(covered);
+                body.write(out);
+            }
+            Files.move(temp.toPath(), _snapshot.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            _mapped = null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the snapshot, memory-mapped, mapping it again whenever it
+     *  has changed since it was last mapped. */
+    MappedByteBuffer map() {
+        if (_mapped == null || _mappedModified != _snapshot.lastModified()) {
+            try (FileChannel channel = FileChannel.open(_snapshot.toPath(),
+                     StandardOpenOption.READ)) {
+                _mappedModified = _snapshot.lastModified();
+                _mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return _mapped;
+    }
+
+    /** The journal. */
+    private final File _journal;
+
+    /** The snapshot. */
+    private final File _snapshot;
+
+    /** Bytes that start the snapshot. */
+    private final byte[] _magic;
+
+    /** Version of the snapshot format. */
+    private final int _version;
+
+    /** The mapped snapshot, or null if it has not been mapped. */
+    private MappedByteBuffer _mapped;
+
+    /** Modification time of the snapshot when it was mapped. */
+    private long _mappedModified;
+}
@@ -0,0 +1,455 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/** Line-by-line differences between two versions of a file, as a list of
+ *  Edits, each replacing a run of lines of the first version by a run of
+ *  lines of the second. Lines are compared by number: every distinct line
+ *  of the two versions is first given a number through a hash table, so
+ *  that each line is only hashed once and compared byte by byte only when
+ *  its hash matches.
+ *
+ *  The lines at the start and the end of a region that are the same in
+ *  both versions are taken off first, so that a large file with a few
+ *  edits costs little more than reading it. The rest is split as in the
+ *  histogram diff: around the longest run of common lines containing a
+ *  line that occurs the fewest times, and at most MAX_CHAIN times, in the
+ *  first version, and the two sides are diffed in turn. A region with no
+ *  such line is split instead at the middle snake of Myers' O(ND)
+ *  algorithm, which needs only space linear in the size of the region.
+ *  Its cost grows with the square of the number of differences, so as in
+ *  Git it gives up after about the square root of the size of the region
+ *  steps, at least MIN_COST, and splits the region where its paths from
+ *  either end reached furthest instead; the result may then be longer
+ *  than the shortest diff, but a file that was rewritten costs little
+ *  more than one that was not.
+ *  Regions are kept on a stack rather than by recursion, so long files
+ *  with many edits cannot overflow the call stack.
+ *  @author Edan Bash
+ */
+class LineDiff {
+
+    /** Largest number of times a line may occur in the first version of
+     *  a region for it to be used to split the region. */
+    private static final int MAX_CHAIN = 64;
+
+    /** Smallest number of steps the middle snake search may take in a
+     *  region before it gives up and splits the region where its paths
+     *  reached furthest. */
+    private static final int MIN_COST = 256;
+
+    /** Multiplier of the hash of a line. */
+    private static final int PRIME = 31;
+
+    /** Mask to read a byte as unsigned. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Ends a line. */
+    private static final byte NEWLINE = '\n';
+
+    /** Orders edits by their position in the first version, then in the
+     *  second. */
+    private static final Comparator<Edit> ORDER =
+        Comparator.comparingInt(Edit::getBeginA)
+        .thenComparingInt(Edit::getBeginB);
+
+    /** The lines of a file. A line includes the newline ending it, if
+     *  any; only the last line of a file can lack one. */
+    static class Lines {
+        /** The lines of DATA. */
+        Lines(byte[] data) {
+            _data = data;
+            int size = 0;
+            for (byte b : data) {
+                if (b == NEWLINE) {
+                    size += 1;
+                }
+            }
+            if (data.length > 0 && data[data.length - 1] != NEWLINE) {
+                size += 1;
+            }
+            _starts = new int[size + 1];
+            int n = 1;
+            for (int i = 0; i < data.length; i += 1) {
+                if (data[i] == NEWLINE && n < size) {
+                    _starts[n] = i + 1;
+                    n += 1;
+                }
+            }
+            _starts[size] = data.length;
+        }
+
+        /** Returns the number of lines. */
+        int size() {
+            return _starts.length - 1;
+        }
+
+        /** Returns true if line I ends with a newline. */
+        boolean endsWithNewline(int i) {
+            return _data[_starts[i + 1] - 1] == NEWLINE;
+        }
+
+        /** Returns the hash of line I. */
+        int hash(int i) {
+            int h = 0;
+            for (int k = _starts[i]; k < _starts[i + 1]; k += 1) {
+                h = h * PRIME + (_data[k] & BYTE_MASK);
+            }
+            return h;
+        }
+
+        /** Returns true if line I equals line J of OTHER. */
+        boolean same(int i, Lines other, int j) {
+            return Arrays.equals(_data, _starts[i], _starts[i + 1],
+                                 other._data, other._starts[j],
+                                 other._starts[j + 1]);
+        }
+
+        /** Returns true if the lines from BEGIN to END equal those of OTHER
+         *  from OTHERBEGIN to OTHEREND. */
+        boolean same(int begin, int end, Lines other, int otherBegin,
+                     int otherEnd) {
+            return Arrays.equals(_data, _starts[begin], _starts[end],
+                                 other._data, other._starts[otherBegin],
+                                 other._starts[otherEnd]);
+        }
+
+        /** Writes the lines from BEGIN to END to OUT. */
+        void write(OutputStream out, int begin, int end) {
+            try {
+                out.write(_data, _starts[begin],
+                          _starts[end] - _starts[begin]);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** The contents of the file. */
+        private final byte[] _data;
+
+        /** Where each line starts in _data, followed by its length. */
+        private final int[] _starts;
+    }
+
+    /** A change replacing the lines of the first version from BEGINA to
+     *  ENDA by those of the second from BEGINB to ENDB. Either run may be
+     *  empty, for an insertion or a deletion. */
+    static class Edit {
+        /** An edit replacing the lines from BEGINA to ENDA of the first
+         *  version by those from BEGINB to ENDB of the second. */
+        Edit(int beginA, int endA, int beginB, int endB) {
+            _beginA = beginA;
+            _endA = endA;
+            _beginB = beginB;
+            _endB = endB;
+        }
+
+        /** Returns the first line of the first version replaced. */
+        int getBeginA() {
+            return _beginA;
+        }
+
+        /** Returns the line of the first version after those replaced. */
+        int getEndA() {
+            return _endA;
+        }
+
+        /** Returns the first line of the second version put in. */
+        int getBeginB() {
+            return _beginB;
+        }
+
+        /** Returns the line of the second version after those put in. */
+        int getEndB() {
+            return _endB;
+        }
+
+        /** First line of the first version replaced. */
+        private final int _beginA;
+
+        /** Line of the first version after those replaced. */
+        private final int _endA;
+
+        /** First line of the second version put in. */
+        private final int _beginB;
+
+        /** Line of the second version after those put in. */
+        private final int _endB;
+    }
+
+    /** Returns the edits that turn A into B, in order. Edits never touch
+     *  each other: between two edits there is at least one unchanged
+     *  line. */
+    static List<Edit> diff(Lines a, Lines b) {
+        int[] ids = intern(a, b);
+        int[] x = Arrays.copyOfRange(ids, 0, a.size());
+        int[] y = Arrays.copyOfRange(ids, a.size(), ids.length);
+        int distinct = 0;
+        for (int id : ids) {
+            distinct = Math.max(distinct, id + 1);
+        }
+        int[] count = new int[distinct];
+        int[] first = new int[distinct];
+        List<Edit> edits = new ArrayList<>();
+        ArrayDeque<int[]> regions = new ArrayDeque<>();
+        regions.push(new int[] {0, x.length, 0, y.length});
+        while (!regions.isEmpty()) {
+            int[] r = regions.pop();
+            while (r[0] < r[1] && r[2] < r[3] && x[r[0]] == y[r[2]]) {
+                r[0] += 1;
+                r[2] += 1;
+            }
+            while (r[0] < r[1] && r[2] < r[3]
+                   && x[r[1] - 1] == y[r[3] - 1]) {
+                r[1] -= 1;
+                r[3] -= 1;
+            }
+            if (r[0] == r[1] || r[2] == r[3]) {
+                if (r[0] < r[1] || r[2] < r[3]) {
+                    edits.add(new Edit(r[0], r[1], r[2], r[3]));
+                }
+                continue;
+            }
+            int[] split = anchor(x, y, r, count, first);
+            if (split == null) {
+                split = bisect(x, y, r);
+            }
+            if (split == null || (split[0] == r[1] && split[1] == r[3])
+                || (split[2] == r[0] && split[3] == r[2])) {
+                edits.add(new Edit(r[0], r[1], r[2], r[3]));
+                continue;
+            }
+            regions.push(new int[] {r[0], split[0], r[2], split[1]});
+            regions.push(new int[] {split[2], r[1], split[3], r[3]});
+        }
+        edits.sort(ORDER);
+        return coalesce(edits);
+    }
+
+    /** Returns the number of each line of A followed by that of each line
+     *  of B, numbering equal lines alike, with numbers from 0 up. */
+    private static int[] intern(Lines a, Lines b) {
+        int total = a.size() + b.size();
+        int[] ids = new int[total];
+        int[] hashes = new int[total];
+        int mask = Integer.highestOneBit(Math.max(total, 1)) * 4 - 1;
+        int[] table = new int[mask + 1];
+        int next = 0;
+        for (int k = 0; k < total; k += 1) {
+            Lines lines = (k < a.size()) ? a : b;
+            int i = (k < a.size()) ? k : k - a.size();
+            hashes[k] = lines.hash(i);
+            int slot = hashes[k] & mask;
+            while (true) {
+                if (table[slot] == 0) {
+                    table[slot] = k + 1;
+                    ids[k] = next;
+                    next += 1;
+                    break;
+                }
+                int other = table[slot] - 1;
+                if (hashes[other] == hashes[k]
+                    && lines.same(i, (other < a.size()) ? a : b,
+                                  (other < a.size()) ? other
+                                  : other - a.size())) {
+                    ids[k] = ids[other];
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return ids;
+    }
+
+    /** Returns where to split the region R of the line numbers X and Y,
+     *  which holds the lines from R[0] to R[1] of X and from R[2] to R[3]
+     *  of Y, around a run of common lines, or null if there is none with
+     *  a line occurring at most MAX_CHAIN times in X. The result holds
+     *  the start of the run in X and in Y, then its end in X and in Y.
+     *  COUNT and FIRST are scratch arrays indexed by line number, which
+     *  hold zeros on entry and are left that way. */
+    private static int[] anchor(int[] x, int[] y, int[] r, int[] count,
+                                int[] first) {
+        for (int i = r[1] - 1; i >= r[0]; i -= 1) {
+            count[x[i]] += 1;
+            first[x[i]] = i;
+        }
+        int[] result = null;
+        int best = MAX_CHAIN + 1;
+        int bestLength = 0;
+        int j = r[2];
+        while (j < r[3]) {
+            int occurs = count[y[j]];
+            if (occurs == 0 || occurs > best) {
+                j += 1;
+                continue;
+            }
+            int i = first[y[j]];
+            int back = 0;
+            while (i - back > r[0] && j - back > r[2]
+                   && x[i - back - 1] == y[j - back - 1]) {
+                back += 1;
+            }
+            int length = back + 1;
+            while (i - back + length < r[1] && j - back + length < r[3]
+                   && x[i - back + length] == y[j - back + length]) {
+                length += 1;
+            }
+            if (occurs < best || length > bestLength) {
+                best = occurs;
+                bestLength = length;
+                result = new int[] {i - back, j - back, i - back + length,
+                                    j - back + length};
+            }
+            j += length - back;
+        }
+        for (int i = r[0]; i < r[1]; i += 1) {
+            count[x[i]] = 0;
+        }
+        return result;
+    }
+
+    /** Returns where to split the region R of the line numbers X and Y,
+     *  as for anchor, at the point where the furthest reaching paths of
+     *  Myers' algorithm from the two ends of the region meet, or null if
+     *  they never do. If they have not met after the steps allowed by
+     *  maxCost, splits where one of them got furthest instead, or returns
+     *  null if none got anywhere. Both sides of the region must be
+     *  non-empty. */
+    private static int[] bisect(int[] x, int[] y, int[] r) {
+        int n = r[1] - r[0];
+        int m = r[3] - r[2];
+        int maxD = (n + m + 1) / 2;
+        int maxCost = maxCost(n + m);
+        int offset = Math.min(maxD, maxCost);
+        int length = 2 * offset + 2;
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean odd = delta % 2 != 0;
+        int fStart = 0;
+        int fEnd = 0;
+        int bStart = 0;
+        int bEnd = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            if (d >= maxCost) {
+                return furthest(r, forward, backward, offset);
+            }
+            for (int k = -d + fStart; k <= d - fEnd; k += 2) {
+                int kOff = offset + k;
+                int i = (k == -d || (k != d
+                                     && forward[kOff - 1] < forward[kOff + 1]))
+                    ? forward[kOff + 1] : forward[kOff - 1] + 1;
+                int j = i - k;
+                while (i < n && j < m && x[r[0] + i] == y[r[2] + j]) {
+                    i += 1;
+                    j += 1;
+                }
+                forward[kOff] = i;
+                if (i > n) {
+                    fEnd += 2;
+                } else if (j > m) {
+                    fStart += 2;
+                } else if (odd) {
+                    int other = offset + delta - k;
+                    if (other >= 0 && other < length && backward[other] != -1
+                        && i >= n - backward[other]) {
+                        return new int[] {r[0] + i, r[2] + j, r[0] + i,
+                                          r[2] + j};
+                    }
+                }
+            }
+            for (int k = -d + bStart; k <= d - bEnd; k += 2) {
+                int kOff = offset + k;
+                int i = (k == -d
+                         || (k != d
+                             && backward[kOff - 1] < backward[kOff + 1]))
+                    ? backward[kOff + 1] : backward[kOff - 1] + 1;
+                int j = i - k;
+                while (i < n && j < m
+                       && x[r[1] - 1 - i] == y[r[3] - 1 - j]) {
+                    i += 1;
+                    j += 1;
+                }
+                backward[kOff] = i;
+                if (i > n) {
+                    bEnd += 2;
+                } else if (j > m) {
+                    bStart += 2;
+                } else if (!odd) {
+                    int other = offset + delta - k;
+                    if (other >= 0 && other < length && forward[other] != -1
+                        && forward[other] >= n - i) {
+                        int fi = forward[other];
+                        int fj = offset + fi - other;
+                        return new int[] {r[0] + fi, r[2] + fj, r[0] + fi,
+                                          r[2] + fj};
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the number of steps bisect may take in a region of SIZE
+     *  lines in all: about the square root of SIZE, and at least
+     *  MIN_COST. */
+    private static int maxCost(int size) {
+        int bits = Integer.SIZE - Integer.numberOfLeadingZeros(size);
+        return Math.max(MIN_COST, 1 << (bits / 2));
+    }
+
+    /** Returns where to split the region R, as for bisect, at the point
+     *  furthest from its start reached by the paths in FORWARD or from
+     *  its end by those in BACKWARD, indexed by diagonal plus OFFSET as in
+     *  bisect, or null if no path left its end. */
+    private static int[] furthest(int[] r, int[] forward, int[] backward,
+                                  int offset) {
+        int n = r[1] - r[0];
+        int m = r[3] - r[2];
+        int best = 0;
+        int[] result = null;
+        for (int kOff = 0; kOff < forward.length; kOff += 1) {
+            for (int[] reached : new int[][] {forward, backward}) {
+                int i = reached[kOff];
+                int j = i - (kOff - offset);
+                if (i < 0 || i > n || j < 0 || j > m || i + j <= best) {
+                    continue;
+                }
+                best = i + j;
+                int x = (reached == forward) ? r[0] + i : r[1] - i;
+                int y = (reached == forward) ? r[2] + j : r[3] - j;
+                result = new int[] {x, y, x, y};
+            }
+        }
+        return result;
+    }
+
+    /** Returns EDITS, which are in order, with edits that touch merged. */
+    private static List<Edit> coalesce(List<Edit> edits) {
+        List<Edit> result = new ArrayList<>();
+        for (Edit edit : edits) {
+            Edit last = result.isEmpty() ? null
+                : result.get(result.size() - 1);
+            if (last != null && last.getEndA() == edit.getBeginA()
+                && last.getEndB() == edit.getBeginB()) {
+                result.set(result.size() - 1,
+                           new Edit(last.getBeginA(), edit.getEndA(),
+                                    last.getBeginB(), edit.getEndB()));
+            } else {
+                result.add(edit);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of LineDiff.
+ *  @author Edan Bash
+ */
+public class LineDiffTest {
+
+    /** Number of random pairs of files diffed. */
+    private static final int TRIALS = 500;
+
+    /** Largest number of lines in a random file. */
+    private static final int MAX_LINES = 300;
+
+    /** Number of distinct lines in random files, few enough that most
+     *  occur many times. */
+    private static final int DISTINCT = 5;
+
+    /** Returns the lines of TEXT. */
+    static LineDiff.Lines lines(String text) {
+        return new LineDiff.Lines(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns the text made by applying EDITS, which turn A into B, to
+     *  A, taking the lines they put in from B. */
+    private static String apply(LineDiff.Lines a, LineDiff.Lines b,
+                                List<LineDiff.Edit> edits) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int pos = 0;
+        for (LineDiff.Edit edit : edits) {
+            assertTrue(edit.getBeginA() >= pos);
+            a.write(out, pos, edit.getBeginA());
+            b.write(out, edit.getBeginB(), edit.getEndB());
+            pos = edit.getEndA();
+        }
+        a.write(out, pos, a.size());
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Asserts that the diff of A and B turns A into B, and returns it. */
+    private static List<LineDiff.Edit> check(String a, String b) {
+        LineDiff.Lines x = lines(a);
+        LineDiff.Lines y = lines(b);
+        List<LineDiff.Edit> edits = LineDiff.diff(x, y);
+        assertEquals(b, apply(x, y, edits));
+        for (int i = 1; i < edits.size(); i += 1) {
+            assertTrue(edits.get(i - 1).getEndA() < edits.get(i).getBeginA());
+        }
+        return edits;
+    }
+
+    @Test
+    public void findsSingleEdits() {
+        List<LineDiff.Edit> edits = check("a\nb\nc\nd\n", "a\nB\nc\nd\n");
+        assertEquals(1, edits.size());
+        assertEquals(1, edits.get(0).getBeginA());
+        assertEquals(2, edits.get(0).getEndA());
+        assertEquals(1, edits.get(0).getBeginB());
+        assertEquals(2, edits.get(0).getEndB());
+
+        edits = check("a\nb\n", "a\nx\nb\n");
+        assertEquals(1, edits.size());
+        assertEquals(1, edits.get(0).getBeginA());
+        assertEquals(1, edits.get(0).getEndA());
+
+        assertTrue(check("same\n", "same\n").isEmpty());
+        assertEquals(1, check("", "new\n").size());
+        assertEquals(1, check("old\n", "").size());
+    }
+
+    @Test
+    public void handlesMissingNewlineAtEnd() {
+        LineDiff.Lines x = lines("a\nb");
+        assertEquals(2, x.size());
+        assertTrue(x.endsWithNewline(0));
+        assertFalse(x.endsWithNewline(1));
+        List<LineDiff.Edit> edits = check("a\nb", "a\nb\n");
+        assertEquals(1, edits.size());
+        assertEquals(1, edits.get(0).getBeginA());
+        check("a\nb\n", "a\nb");
+        check("a", "b");
+    }
+
+    @Test
+    public void turnsRandomFilesIntoEachOther() {
+        Random random = new Random(0);
+        for (int t = 0; t < TRIALS; t += 1) {
+            StringBuilder a = new StringBuilder();
+            StringBuilder b = new StringBuilder();
+            int size = random.nextInt(MAX_LINES);
+            for (int i = 0; i < size; i += 1) {
+                String line = random.nextInt(DISTINCT) + "\n";
+                a.append(line);
+                if (random.nextInt(4) > 0) {
+                    b.append(line);
+                }
+                if (random.nextInt(4) == 0) {
+                    b.append(random.nextInt(DISTINCT + 1)).append('\n');
+                }
+            }
+            check(a.toString(), b.toString());
+        }
+    }
+
+    @Test
+    public void diffsRewrittenFile() {
+        StringBuilder a = new StringBuilder();
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < MAX_LINES * MAX_LINES; i += 1) {
+            a.append("old ").append(i).append('\n');
+            b.append("new ").append(i).append('\n');
+        }
+        assertEquals(1, check(a.toString(), b.toString()).size());
+    }
+}
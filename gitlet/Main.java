@@ -10,81 +10,93 @@ public class Main {
     /** Current Working Directory. */
     static final File CWD = new File(".");
 
-    /** File that stores repo object after init. */
-    static final File REPO = Utils.join(CWD, ".gitlet/repo");
-
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+     *  <COMMAND> <OPERAND> .... If a Daemon is running in this directory,
+     *  it runs the command instead, unless it is a batch, which already
+     *  loads the repo only once. */
     public static void main(String... args) {
+        if (args.length > 0 && !args[0].equals("init")
+            && !args[0].equals("daemon") && !args[0].equals("batch")
+            && Daemon.forward(args)) {
+            return;
+        }
         try {
-            if (args.length == 0) {
-                System.out.println("Please enter a command.");
-            } else if (args[0].equals("init")) {
-                createRepository();
-            } else {
-                Repository repo;
-                try {
-                    repo = Utils.readObject(REPO, Repository.class);
-                } catch (IllegalArgumentException i) {
-                    throw new GitletException("Not in an initialized "
-                            + "Gitlet directory.");
-                }
-                switch (args[0]) {
-                case "add":
-                    repo.addCommand(args);
-                    break;
-                case "commit":
-                    repo.commitCommand(args);
-                    break;
-                case "rm":
-                    repo.rmCommand(args);
-                    break;
-                case "log":
-                    repo.logCommand(args);
-                    break;
-                case "global-log":
-                    repo.globalLogCommand(args);
-                    break;
-                case "find":
-                    repo.findCommand(args);
-                    break;
-                case "status":
-                    repo.statusCommand(args);
-                    break;
-                case "checkout":
-                    repo.checkoutCommand(args);
-                    break;
-                case "branch":
-                    repo.branchCommand(args);
-                    break;
-                case "rm-branch":
-                    repo.rmBranchCommand(args);
-                    break;
-                case "reset":
-                    repo.resetCommand(args);
-                    break;
-                case "merge":
-                    repo.mergeCommand(args);
-                    break;
-                default:
-                    throw new GitletException("No command with "
-                           +  "that name exists.");
-                }
-            }
+            run(new Repository(), args);
         } catch (GitletException g) {
             System.out.println(g.getMessage()); System.exit(0);
         }
     }
 
-    /** Creates new Repository. */
-    private static void createRepository() {
-        File gitDir = Utils.join(CWD, ".gitlet");
-        if (!gitDir.exists()) {
-            Repository repo = new Repository();
-            Utils.writeObject(REPO, repo);
+    /** Runs the command in ARGS on REPO, printing its output to
+     *  System.out. Errors are thrown as GitletExceptions, whose message is
+     *  to be printed, rather than ending the program. */
+    static void run(Repository repo, String... args) {
+        if (args.length == 0) {
+            System.out.println("Please enter a command.");
+        } else if (args[0].equals("init")) {
+            repo.initCommand(args);
         } else {
-            throw new GitletException("A Gitlet version-control "
-                    + "system already exists in the current directory.");
+            if (!repo.exists()) {
+                throw new GitletException("Not in an initialized "
+                        + "Gitlet directory.");
+            }
+            Upgrade.check();
+            switch (args[0]) {
+            case "add":
+                repo.addCommand(args);
+                break;
+            case "commit":
+                repo.commitCommand(args);
+                break;
+            case "rm":
+                repo.rmCommand(args);
+                break;
+            case "log":
+                repo.logCommand(args);
+                break;
+            case "global-log":
+                repo.globalLogCommand(args);
+                break;
+            case "find":
+                repo.findCommand(args);
+                break;
+            case "status":
+                repo.statusCommand(args);
+                break;
+            case "checkout":
+                repo.checkoutCommand(args);
+                break;
+            case "branch":
+                repo.branchCommand(args);
+                break;
+            case "rm-branch":
+                repo.rmBranchCommand(args);
+                break;
+            case "reset":
+                repo.resetCommand(args);
+                break;
+            case "merge":
+                repo.mergeCommand(args);
+                break;
+            case "gc":
+                repo.gcCommand(args);
+                break;
+            case "diff":
+                repo.diffCommand(args);
+                break;
+            case "config":
+                repo.configCommand(args);
+                break;
+            case "batch":
+                Batch.command(repo, args);
+                break;
+            case "daemon":
+                Daemon.command(repo, args);
+                break;
+            default:
+                throw new GitletException("No command with "
+                       +  "that name exists.");
+            }
         }
     }
 }
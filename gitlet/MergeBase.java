@@ -0,0 +1,79 @@
+package gitlet;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/** Finds the split point of two commits: the best common ancestor, that
+ *  is, a common ancestor that is not an ancestor of any other common
+ *  ancestor. Commits are visited in decreasing order of generation number
+ *  from both starting points at once, each marked with the side(s) it was
+ *  reached from. Since every commit has a larger generation than all of
+ *  its ancestors, all of a commit's descendants on both sides have been
+ *  visited before it is, so the first commit found to be reachable from
+ *  both sides is a common ancestor that no other common ancestor
+ *  descends from. The walk stops there, so it only reads the commits
+ *  between the two starting points and the split point, and takes them
+ *  from the CommitGraph where it can rather than parsing them.
+ *  @author Edan Bash
+ */
+class MergeBase {
+
+    /** Mark of commits reachable from the first starting point. */
+    private static final int FIRST = 1;
+
+    /** Mark of commits reachable from the second starting point. */
+    private static final int SECOND = 2;
+
+    /** Mark of commits reachable from both starting points. */
+    private static final int BOTH = FIRST | SECOND;
+
+    /** Orders commits by decreasing generation, then decreasing time. */
+    private static final Comparator<CommitGraph.Node> ORDER = (a, b) -> {
+        if (a.getGeneration() != b.getGeneration()) {
+            return Integer.compare(b.getGeneration(), a.getGeneration());
+        }
+        return Long.compare(b.getTimestamp(), a.getTimestamp());
+    };
+
+    /** Returns the id of the split point of the commits ID1 and ID2, or
+     *  null if they have no common ancestor. Among commits of the same
+     *  generation, newer ones are visited first. */
+    static String find(String id1, String id2) {
+        if (id1.equals(id2)) {
+            return id1;
+        }
+        HashMap<String, Integer> marks = new HashMap<>();
+        PriorityQueue<CommitGraph.Node> queue = new PriorityQueue<>(ORDER);
+        mark(id1, FIRST, marks, queue);
+        mark(id2, SECOND, marks, queue);
+        while (!queue.isEmpty()) {
+            CommitGraph.Node commit = queue.poll();
+            int mark = marks.get(commit.getID());
+            if (mark == BOTH) {
+                return commit.getID();
+            }
+            if (commit.getParentID() != null) {
+                mark(commit.getParentID(), mark, marks, queue);
+            }
+            if (commit.getMergeParentID() != null) {
+                mark(commit.getMergeParentID(), mark, marks, queue);
+            }
+        }
+        return null;
+    }
+
+    /** Adds MARK to the marks of commit ID in MARKS, queueing it on QUEUE
+     *  the first time it is reached. */
+    private static void mark(String id, int mark,
+                             HashMap<String, Integer> marks,
+                             PriorityQueue<CommitGraph.Node> queue) {
+        Integer old = marks.get(id);
+        if (old == null) {
+            marks.put(id, mark);
+            queue.add(CommitGraph.node(id));
+        } else {
+            marks.put(id, old | mark);
+        }
+    }
+}
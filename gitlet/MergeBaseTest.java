@@ -0,0 +1,94 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.run;
+import static gitlet.TestUtils.read;
+import static gitlet.TestUtils.write;
+
+/** Tests of merges, whose split points are found by MergeBase.
+ *  @author Edan Bash
+ */
+public class MergeBaseTest {
+
+    /** Writes CONTENTS to NAME in DIR and commits it with message MSG. */
+    private static void commit(File dir, String name, String contents,
+                               String msg) throws IOException {
+        write(dir, name, contents);
+        run(dir, "add", name);
+        run(dir, "commit", msg);
+    }
+
+    @Test
+    public void findsAncestorsOfEitherBranch() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            commit(dir, "f.txt", "one", "one");
+            run(dir, "branch", "other");
+            commit(dir, "f.txt", "two", "two");
+            commit(dir, "f.txt", "three", "three");
+            assertEquals("Given branch is an ancestor of the current "
+                         + "branch.\n", run(dir, "merge", "other"));
+            run(dir, "checkout", "other");
+            assertEquals("one", read(dir, "f.txt"));
+            assertEquals("Current branch fast-forwarded.\n",
+                         run(dir, "merge", "master"));
+            assertEquals("three", read(dir, "f.txt"));
+        });
+    }
+
+    @Test
+    public void usesLatestCommonAncestor() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            commit(dir, "f.txt", "zero", "zero");
+            commit(dir, "g.txt", "zero", "g");
+            run(dir, "branch", "other");
+            commit(dir, "g.txt", "master", "master");
+            run(dir, "checkout", "other");
+            commit(dir, "f.txt", "one", "one");
+            run(dir, "checkout", "master");
+            assertEquals("", run(dir, "merge", "other"));
+            assertEquals("one", read(dir, "f.txt"));
+            assertEquals("master", read(dir, "g.txt"));
+
+            run(dir, "checkout", "other");
+            commit(dir, "f.txt", "two", "two");
+            run(dir, "checkout", "master");
+            assertEquals("The split point is the head of other merged "
+                         + "before, so f.txt does not conflict",
+                         "", run(dir, "merge", "other"));
+            assertEquals("two", read(dir, "f.txt"));
+            assertEquals("master", read(dir, "g.txt"));
+
+            run(dir, "checkout", "other");
+            assertEquals("Current branch fast-forwarded.\n",
+                         run(dir, "merge", "master"));
+            assertEquals("master", read(dir, "g.txt"));
+        });
+    }
+
+    @Test
+    public void graphsCommitsInAnyJournalOrder() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            commit(dir, "f.txt", "one", "one");
+            run(dir, "branch", "other");
+            commit(dir, "f.txt", "two", "two");
+            String[] journal = read(dir, ".gitlet/commits").split("\n");
+            Collections.reverse(Arrays.asList(journal));
+            write(dir, ".gitlet/commits", String.join("\n", journal) + "\n");
+            assertEquals("A parent listed after its child is still graphed",
+                         "", run(dir, "gc"));
+            assertEquals("Given branch is an ancestor of the current "
+                         + "branch.\n", run(dir, "merge", "other"));
+        });
+    }
+}
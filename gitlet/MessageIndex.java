@@ -0,0 +1,285 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/** An inverted index of commit messages, answering find without reading
+ *  commits. It is kept like the CommitIndex: each commit's id and message
+ *  are appended to the journal .gitlet/messages as it is made, and every
+ *  so often the journal is turned into the snapshot .gitlet/message-index,
+ *  whose terms are searched by binary search while the part of the
+ *  journal written since is scanned. Both files are handled by a
+ *  Journal.
+ *
+ *  The terms of a message are its words, lowercased, where a word is a
+ *  run of letters and digits, each prefixed by "w:", and the SHA-1 of the
+ *  whole message, prefixed by "m:", for exact matches. The snapshot starts
+ *  with the bytes "GMIX", its version, the length of the journal it covers
+ *  and the number of terms, followed by the offset of each term's record,
+ *  in order of the terms' UTF-8 bytes. A record holds the length and bytes
+ *  of its term, the number of commits having it and their binary ids, in
+ *  the order they were made.
+ *  @author Edan Bash
+ */
+class MessageIndex {
+
+    /** Journal of the ids and messages of all commits, oldest first. */
+    static final File JOURNAL = Utils.join(Main.CWD, ".gitlet", "messages");
+
+    /** Snapshot of the journal. */
+    static final File SNAPSHOT = Utils.join(Main.CWD, ".gitlet",
+            "message-index");
+
+    /** Number of messages written to the journal since the snapshot was
+     *  built that causes it to be rebuilt. */
+    static final int REBUILD_THRESHOLD = 1024;
+
+    /** Bytes that start the snapshot. */
+    private static final byte[] MAGIC = {'G', 'M', 'I', 'X'};
+
+    /** Version of the snapshot format. */
+    private static final int VERSION = 1;
+
+    /** The journal and snapshot. */
+    private static final Journal FILES = new Journal(JOURNAL, SNAPSHOT,
+            MAGIC, VERSION);
+
+    /** Offset of the number of terms in the snapshot. */
+    private static final int COUNT_START = FILES.bodyStart();
+
+    /** Offset of the table of record offsets in the snapshot. */
+    private static final int OFFSETS_START = COUNT_START + Integer.BYTES;
+
+    /** Prefix of word terms. */
+    private static final String WORD = "w:";
+
+    /** Prefix of exact message terms. */
+    private static final String EXACT = "m:";
+
+    /** Records that the commit ID with message MSG has been made. */
+    static void add(String id, String msg) {
+        if (startJournal()) {
+            Utils.appendContents(JOURNAL, entry(id, msg));
+        }
+    }
+
+    /** Starts the journal from every commit made so far if there is none,
+     *  as in repos made before it existed, and returns true if it was
+     *  already there. */
+    private static boolean startJournal() {
+        if (JOURNAL.isFile()) {
+            return true;
+        }
+        StringBuilder entries = new StringBuilder();
+        for (String id : new LinkedHashSet<>(CommitIndex.all())) {
+            entries.append(entry(id, ObjectStore.readCommit(id).getMsg()));
+        }
+        Utils.writeContents(JOURNAL, entries.toString());
+        return false;
+    }
+
+    /** Returns the ids of the commits whose message is MSG, oldest
+     *  first. */
+    static List<String> findExact(String msg) {
+        return lookup(EXACT + Utils.sha1(msg), false);
+    }
+
+    /** Returns the ids of the commits whose messages contain every word of
+     *  WORDS, oldest first, or none if WORDS has no words. */
+    static List<String> findWords(String words) {
+        List<String> result = null;
+        for (String word : tokens(words)) {
+            List<String> ids = lookup(WORD + word, false);
+            if (result == null) {
+                result = ids;
+            } else {
+                result.retainAll(new LinkedHashSet<>(ids));
+            }
+        }
+        return (result == null) ? new ArrayList<>() : result;
+    }
+
+    /** Returns the ids of the commits whose messages contain a word
+     *  starting with PREFIX: those having the first such word, oldest
+     *  first, then those having the next, and so on. */
+    static List<String> findPrefix(String prefix) {
+        return lookup(WORD + prefix.toLowerCase(Locale.ROOT), true);
+    }
+
+    /** Turns the whole journal into a new snapshot. */
+    static void rebuild() {
+        startJournal();
+        long length = FILES.length();
+        TreeMap<byte[], List<String>> terms = new TreeMap<>(
+                Arrays::compareUnsigned);
+        for (String[] entry : journalSince(0)) {
+            for (String term : terms(entry[1])) {
+                byte[] key = term.getBytes(StandardCharsets.UTF_8);
+                List<String> ids = terms.get(key);
+                if (ids == null) {
+                    ids = new ArrayList<>();
+                    terms.put(key, ids);
+                }
+                ids.add(entry[0]);
+            }
+        }
+        FILES.writeSnapshot(length, out -> {
+            out.writeInt(terms.size());
+            int offset = OFFSETS_START + terms.size() * Integer.BYTES;
+            for (byte[] term : terms.keySet()) {
+                out.writeInt(offset);
+                offset += 2 * Integer.BYTES + term.length
+                    + terms.get(term).size() * Pack.ID_BYTES;
+            }
+            for (byte[] term : terms.keySet()) {
+                out.writeInt(term.length);
+                out.write(term);
+                out.writeInt(terms.get(term).size());
+                for (String id : terms.get(term)) {
+                    out.write(ObjectStore.toBinary(id));
+                }
+            }
+        });
+    }
+
+    /** Returns the ids of the commits having the term KEY, or, if PREFIX,
+     *  any term starting with KEY, without repeats. */
+    private static List<String> lookup(String key, boolean prefix) {
+        startJournal();
+        long covered = FILES.coverage();
+        List<String[]> tail = journalSince(covered);
+        if (tail.size() > REBUILD_THRESHOLD) {
+            rebuild();
+            covered = FILES.coverage();
+            tail = journalSince(covered);
+        }
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        if (covered > 0) {
+            searchSnapshot(key.getBytes(StandardCharsets.UTF_8), prefix,
+                    result);
+        }
+        for (String[] entry : tail) {
+            for (String term : terms(entry[1])) {
+                if (prefix ? term.startsWith(key) : term.equals(key)) {
+                    result.add(entry[0]);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Adds to RESULT the ids of the commits in the snapshot having the
+     *  term KEY, or, if PREFIX, any term starting with KEY. */
+    private static void searchSnapshot(byte[] key, boolean prefix,
+                                       LinkedHashSet<String> result) {
+        MappedByteBuffer snapshot = FILES.map();
+        int lo = 0, hi = snapshot.getInt(COUNT_START);
+        int count = hi;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Arrays.compareUnsigned(term(snapshot, mid), key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < count; k += 1) {
+            byte[] term = term(snapshot, k);
+            boolean match = prefix
+                ? term.length >= key.length
+                  && Arrays.equals(term, 0, key.length, key, 0, key.length)
+                : Arrays.equals(term, key);
+            if (!match) {
+                break;
+            }
+            int record = recordOffset(snapshot, k);
+            int ids = record + 2 * Integer.BYTES + term.length;
+            int n = snapshot.getInt(record + Integer.BYTES + term.length);
+            byte[] id = new byte[Pack.ID_BYTES];
+            for (int i = 0; i < n; i += 1) {
+                snapshot.get(ids + i * Pack.ID_BYTES, id);
+                result.add(ObjectStore.toHex(id, 0));
+            }
+        }
+    }
+
+    /** Returns the Kth term of SNAPSHOT. */
+    private static byte[] term(MappedByteBuffer snapshot, int k) {
+        int record = recordOffset(snapshot, k);
+        byte[] result = new byte[snapshot.getInt(record)];
+        snapshot.get(record + Integer.BYTES, result);
+        return result;
+    }
+
+    /** Returns the offset of the record of the Kth term of SNAPSHOT. */
+    private static int recordOffset(MappedByteBuffer snapshot, int k) {
+        return snapshot.getInt(OFFSETS_START + k * Integer.BYTES);
+    }
+
+    /** Returns the terms of the message MSG. */
+    private static List<String> terms(String msg) {
+        List<String> result = new ArrayList<>();
+        result.add(EXACT + Utils.sha1(msg));
+        for (String word : new LinkedHashSet<>(tokens(msg))) {
+            result.add(WORD + word);
+        }
+        return result;
+    }
+
+    /** Returns the words of TEXT, lowercased, in order. */
+    private static List<String> tokens(String text) {
+        List<String> result = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT)
+                 .split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the journal line recording commit ID with message MSG, in
+     *  which backslashes and newlines are escaped. */
+    private static String entry(String id, String msg) {
+        return id + " " + msg.replace("\\", "\\\\").replace("\n", "\\n")
+            + "\n";
+    }
+
+    /** Returns the id and message of each entry of the journal from byte
+     *  OFFSET on. */
+    private static List<String[]> journalSince(long offset) {
+        List<String[]> result = new ArrayList<>();
+        for (String line : FILES.readSince(offset).split("\n")) {
+            if (line.length() > Utils.UID_LENGTH) {
+                result.add(new String[] {
+                    line.substring(0, Utils.UID_LENGTH),
+                    unescape(line.substring(Utils.UID_LENGTH + 1))
+                });
+            }
+        }
+        return result;
+    }
+
+    /** Returns the message escaped as ESCAPED by entry. */
+    private static String unescape(String escaped) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < escaped.length(); i += 1) {
+            char c = escaped.charAt(i);
+            if (c == '\\' && i + 1 < escaped.length()) {
+                i += 1;
+                result.append(escaped.charAt(i) == 'n' ? '\n'
+                              : escaped.charAt(i));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
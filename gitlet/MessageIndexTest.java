@@ -0,0 +1,100 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.log;
+import static gitlet.TestUtils.run;
+import static gitlet.TestUtils.write;
+
+/** Tests of find, which looks commits up in the MessageIndex.
+ *  @author Edan Bash
+ */
+public class MessageIndexTest {
+
+    /** Messages of the commits made by the tests, oldest first. */
+    private static final String[] MESSAGES = {
+        "Fix the parser", "fix lexer", "Add parser tests",
+        "two\nlines \\n", "Fix the parser", "Parsing, again"
+    };
+
+    /** Number of the MESSAGES committed before the index is rebuilt by
+     *  gc, so that the others are only in the journal. */
+    private static final int BEFORE_GC = 3;
+
+    /** Makes a commit with each of MESSAGES in a new repo in DIR, running
+     *  gc after the first BEFORE_GC, and returns their ids, oldest
+     *  first. */
+    private static String[] makeCommits(File dir) throws IOException {
+        run(dir, "init");
+        for (int i = 0; i < MESSAGES.length; i += 1) {
+            if (i == BEFORE_GC) {
+                run(dir, "gc");
+            }
+            write(dir, "f.txt", Integer.toString(i));
+            run(dir, "add", "f.txt");
+            run(dir, "commit", MESSAGES[i]);
+        }
+        List<String> ids = log(dir);
+        String[] result = new String[MESSAGES.length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = ids.get(MESSAGES.length - 1 - i);
+        }
+        return result;
+    }
+
+    /** Returns the lines holding the IDS, as find prints them. */
+    private static String lines(String... ids) {
+        return String.join("\n", ids) + "\n";
+    }
+
+    @Test
+    public void findsMessages() throws IOException {
+        inTempDir(dir -> {
+            String[] ids = makeCommits(dir);
+            assertEquals(lines(ids[0], ids[4]),
+                         run(dir, "find", "Fix the parser"));
+            assertEquals(lines(ids[3]), run(dir, "find", MESSAGES[3]));
+            assertEquals("Found no commit with that message.\n",
+                         run(dir, "find", "fix the parser"));
+            assertEquals("Found no commit with that message.\n",
+                         run(dir, "find", "Fix the"));
+        });
+    }
+
+    @Test
+    public void findsWords() throws IOException {
+        inTempDir(dir -> {
+            String[] ids = makeCommits(dir);
+            assertEquals(lines(ids[0], ids[1], ids[4]),
+                         run(dir, "find", "--word", "FIX"));
+            assertEquals(lines(ids[0], ids[4]),
+                         run(dir, "find", "--word", "parser fix"));
+            assertEquals(lines(ids[3]), run(dir, "find", "--word", "n"));
+            assertEquals("Found no commit with that message.\n",
+                         run(dir, "find", "--word", "pars"));
+            assertEquals("Found no commit with that message.\n",
+                         run(dir, "find", "--word", "--"));
+        });
+    }
+
+    @Test
+    public void findsPrefixes() throws IOException {
+        inTempDir(dir -> {
+            String[] ids = makeCommits(dir);
+            assertEquals("Commits with \"parser\" come before those with "
+                         + "\"parsing\"",
+                         lines(ids[0], ids[2], ids[4], ids[5]),
+                         run(dir, "find", "--prefix", "Pars"));
+            assertEquals(lines(ids[1]),
+                         run(dir, "find", "--prefix", "lex"));
+            assertEquals("Found no commit with that message.\n",
+                         run(dir, "find", "--prefix", "parsers"));
+        });
+    }
+}
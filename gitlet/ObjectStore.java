@@ -0,0 +1,495 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** Content-addressed store for the commits, trees and blobs of a repo.
+ *  Every object lives in its own file under .gitlet/objects, named by its
+ *  SHA-1 id (the first two hex digits select a subdirectory, as in Git),
+ *  is written exactly once and is only read back when a command needs it.
+ *  Commits and trees are stored in their binary Codec form; blobs are
+ *  stored as raw bytes and are always streamed, never loaded whole unless
+ *  a caller asks for that.
+ *
+ *  Each object file starts with a four-byte header: the bytes "GLT"
+ *  and a format byte, either STORED (the data follows as is) or
+ *  DEFLATED (the data follows as a zlib stream). The level used for new
+ *  objects is the core.compression setting; level 0 stores objects
+ *  uncompressed. Files without the header predate it and are read as
+ *  stored.
+ *
+ *  The gc command moves objects out of their loose files into a Pack in
+ *  .gitlet/objects/pack, where versions of the same file are stored as
+ *  deltas against each other. Lookups try loose objects first and then
+ *  each pack.
+ *  @author Edan Bash
+ */
+class ObjectStore {
+
+    /** Directory holding all objects. */
+    static final File OBJECTS = Utils.join(Main.CWD, ".gitlet", "objects");
+
+    /** Directory holding packs. */
+    static final File PACKS = Utils.join(OBJECTS, "pack");
+
+    /** Number of hex digits of an id used to name its subdirectory. */
+    private static final int DIR_DIGITS = 2;
+
+    /** Bytes that start the header of every object file. */
+    private static final byte[] MAGIC = {'G', 'L', 'T'};
+
+    /** Length of the header of an object file. */
+    private static final int HEADER_LENGTH = MAGIC.length + 1;
+
+    /** Format byte of an object stored uncompressed. */
+    private static final int STORED = 0;
+
+    /** Format byte of an object stored as a zlib stream. */
+    private static final int DEFLATED = 1;
+
+    /** Mask to read a byte as unsigned. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Radix of hexadecimal ids. */
+    private static final int HEX = 16;
+
+    /** Initial capacity of the caches of parsed objects. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Load factor of the caches of parsed objects. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** Returns true if an object with ID has been stored. */
+    static boolean contains(String id) {
+        return objectFile(id).isFile() || findPack(id) != null;
+    }
+
+    /** Stores COM, in its binary form, unless it is already stored. */
+    static void writeCommit(Commit com) {
+        writeObject(com.getHashCode(), com.toBinary());
+    }
+
+    /** Stores TREE, whose id is ID, in its binary form, unless it is
+     *  already stored. */
+    static void writeTree(String id, Tree tree) {
+        if (!contains(id)) {
+            writeObject(id, tree.toBinary());
+        }
+        synchronized (ObjectStore.class) {
+            if (_treeCache == null) {
+                _treeCache = newCache(Config.TREE_CACHE);
+            }
+            _treeCache.put(id, tree);
+        }
+    }
+
+    /** Stores DATA as the object ID, unless it is already stored. */
+    private static void writeObject(String id, byte[] data) {
+        if (!contains(id)) {
+            File temp = tempFile();
+            try (OutputStream out = openForWrite(temp)) {
+                out.write(data);
+            } catch (IOException excp) {
+                temp.delete();
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            install(temp, id);
+        }
+    }
+
+    /** Returns the commit with ID, parsing it only if it is not among
+     *  the most recently used commits. Commits refer to their parents by
+     *  id and are only parsed when reached, so walking part of the history
+     *  never loads the rest of it, and the cache bounds how many parsed
+     *  commits are kept alive at once. Like trees, commits may be read
+     *  from several threads at once, so only the cache is locked. */
+    static Commit readCommit(String id) {
+        synchronized (ObjectStore.class) {
+            if (_commitCache == null) {
+                _commitCache = newCache(Config.COMMIT_CACHE);
+            }
+            Commit cached = _commitCache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Commit result = Commit.fromBinary(id, readData(id));
+        synchronized (ObjectStore.class) {
+            _commitCache.put(id, result);
+        }
+        return result;
+    }
+
+    /** Returns the tree with ID, parsing it only if it is not among the
+     *  most recently used trees. Trees may be read from several threads
+     *  at once, so only the cache is locked; reading and parsing are done
+     *  outside the lock, and two threads missing the same tree both read
+     *  it, which does no harm since trees never change. */
+    static Tree readTree(String id) {
+        synchronized (ObjectStore.class) {
+            if (_treeCache == null) {
+                _treeCache = newCache(Config.TREE_CACHE);
+            }
+            Tree cached = _treeCache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Tree result = Tree.fromBinary(readData(id));
+        synchronized (ObjectStore.class) {
+            _treeCache.put(id, result);
+        }
+        return result;
+    }
+
+    /** Returns a new cache of parsed objects, holding the number of most
+     *  recently used objects given by the setting SIZE:
+     *  core.commitCacheSize for commits and core.treeCacheSize for
+     *  trees. */
+    private static <T> LinkedHashMap<String, T> newCache(String size) {
+        final int capacity = Config.get(size);
+        return new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Stores the contents of FILE as a blob, hashing and copying it in
+     *  a single streaming pass, and returns the blob's id. */
+    static String writeBlob(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return writeBlob(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Stores CONTENT as a blob and returns its id. */
+    static String writeBlob(byte[] content) {
+        return writeBlob(new ByteArrayInputStream(content));
+    }
+
+    /** Stores everything remaining in IN as a blob and returns its id. */
+    private static String writeBlob(InputStream in) {
+        MessageDigest md = Blob.newDigest();
+        File temp = tempFile();
+        try (OutputStream out = openForWrite(temp)) {
+            copy(new DigestInputStream(in, md), out);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        String id = Blob.toID(md);
+        install(temp, id);
+        return id;
+    }
+
+    /** Returns a stream over the contents of the blob ID. */
+    static InputStream openBlob(String id) {
+        return openObject(id);
+    }
+
+    /** Returns the entire contents of the blob ID. */
+    static byte[] readBlob(String id) {
+        return readData(id);
+    }
+
+    /** Returns the uncompressed data of the object ID. */
+    static byte[] readData(String id) {
+        return readData(id, Integer.MAX_VALUE);
+    }
+
+    /** Returns the uncompressed data of the object ID, or null if it is
+     *  longer than LIMIT bytes. */
+    static byte[] readData(String id, int limit) {
+        try (InputStream in = openObject(id)) {
+            byte[] result = in.readNBytes(limit);
+            return (in.read() == -1) ? result : null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Moves every object into a single new pack and deletes the old
+     *  packs, the loose objects that were packed, and every object that
+     *  is not one of the commits COMMITIDS, the trees TREEIDS or the blobs
+     *  BLOBIDS. Blobs should be ordered so that versions of the same file
+     *  are next to each other, since each is delta-compressed against the
+     *  ones just before it. Blobs too large to pack stay loose. */
+    static void repack(List<String> commitIDs, List<String> treeIDs,
+                       List<String> blobIDs) {
+        File index = PackWriter.write(PACKS, commitIDs, treeIDs, blobIDs);
+        for (Pack pack : packs()) {
+            pack.close();
+        }
+        File[] old = PACKS.listFiles();
+        for (File file : old) {
+            String name = file.getName();
+            if (name.startsWith("pack-") && !name.equals(index.getName())
+                && !file.equals(Pack.packFileOf(index))) {
+                file.delete();
+            }
+        }
+        _packs = null;
+        HashSet<String> keep = new HashSet<>(commitIDs);
+        keep.addAll(treeIDs);
+        keep.addAll(blobIDs);
+        for (String id : looseIDs()) {
+            if (!keep.contains(id) || findPack(id) != null) {
+                File file = objectFile(id);
+                file.delete();
+                file.getParentFile().delete();
+            }
+        }
+    }
+
+    /** Returns the ids of all loose objects. */
+    static List<String> looseIDs() {
+        List<String> result = new ArrayList<>();
+        File[] dirs = OBJECTS.listFiles();
+        if (dirs == null) {
+            return result;
+        }
+        for (File dir : dirs) {
+            if (dir.getName().length() != DIR_DIGITS) {
+                continue;
+            }
+            for (String name : Utils.plainFilenamesIn(dir)) {
+                result.add(dir.getName() + name);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the hexadecimal id held in the Pack.ID_BYTES bytes of
+     *  BYTES starting at OFF. */
+    static String toHex(byte[] bytes, int off) {
+        StringBuilder result = new StringBuilder(Utils.UID_LENGTH);
+        for (int i = off; i < off + Pack.ID_BYTES; i += 1) {
+            String digits = Integer.toHexString(bytes[i] & BYTE_MASK);
+            if (digits.length() == 1) {
+                result.append('0');
+            }
+            result.append(digits);
+        }
+        return result.toString();
+    }
+
+    /** Returns true if ID consists only of lowercase hexadecimal digits,
+     *  as the ids of objects and their abbreviations do. */
+    static boolean isHex(String id) {
+        for (int i = 0; i < id.length(); i += 1) {
+            if (Character.digit(id.charAt(i), HEX) < 0
+                || Character.isUpperCase(id.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the binary form of the hexadecimal ID, which must satisfy
+     *  isHex. */
+    static byte[] toBinary(String id) {
+        byte[] result = new byte[Pack.ID_BYTES];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (byte) Integer.parseInt(id.substring(2 * i,
+                    2 * i + 2), HEX);
+        }
+        return result;
+    }
+
+    /** Returns the pack holding ID, or null if it is not packed. */
+    private static Pack findPack(String id) {
+        for (Pack pack : packs()) {
+            if (pack.contains(id)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /** Returns all packs, opening them again if packs have been added or
+     *  removed since they were opened. */
+    private static synchronized List<Pack> packs() {
+        if (_packs != null && _packsModified != PACKS.lastModified()) {
+            for (Pack pack : _packs) {
+                pack.close();
+            }
+            _packs = null;
+        }
+        if (_packs == null) {
+            _packsModified = PACKS.lastModified();
+            _packs = new ArrayList<>();
+            File[] files = PACKS.listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    if (file.getName().startsWith("pack-")
+                        && file.getName().endsWith(".idx")) {
+                        _packs.add(new Pack(file));
+                    }
+                }
+            }
+        }
+        return _packs;
+    }
+
+    /** Writes the contents of the blob ID to FILE, creating or
+     *  overwriting it as needed. */
+    static void copyBlob(String id, File file) {
+        try (InputStream in = openBlob(id);
+             OutputStream out = Files.newOutputStream(file.toPath())) {
+            copy(in, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Copies everything remaining in IN to OUT through a bounded
+     *  buffer. */
+    private static void copy(InputStream in, OutputStream out)
+        throws IOException {
+        byte[] buf = new byte[Blob.BUFFER_SIZE];
+        for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+            out.write(buf, 0, n);
+        }
+    }
+
+    /** Returns a stream that writes the header and then the compressed
+     *  data of a new object to TEMP. */
+    private static OutputStream openForWrite(File temp) throws IOException {
+        int level = Config.get(Config.COMPRESSION);
+        OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(temp.toPath()), Blob.BUFFER_SIZE);
+        out.write(MAGIC);
+        if (level == 0) {
+            out.write(STORED);
+            return out;
+        }
+        out.write(DEFLATED);
+        return new DeflaterOutputStream(out, new Deflater(level),
+                Blob.BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    def.end();
+                }
+            }
+        };
+    }
+
+    /** Returns a stream over the uncompressed data of the object ID. */
+    private static InputStream openObject(String id) {
+        File file = objectFile(id);
+        if (!file.isFile()) {
+            Pack pack = findPack(id);
+            if (pack == null) {
+                throw Utils.error("Missing object %s.", id);
+            }
+            return pack.open(id);
+        }
+        try {
+            InputStream in = new BufferedInputStream(
+                    Files.newInputStream(file.toPath()), Blob.BUFFER_SIZE);
+            byte[] header = new byte[HEADER_LENGTH];
+            in.mark(HEADER_LENGTH);
+            int n = in.readNBytes(header, 0, HEADER_LENGTH);
+            if (n < HEADER_LENGTH || !Arrays.equals(header, 0, MAGIC.length,
+                    MAGIC, 0, MAGIC.length)) {
+                in.reset();
+                return in;
+            } else if (header[MAGIC.length] == STORED) {
+                return in;
+            }
+            return inflating(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns a stream of the data that the zlib stream IN holds, which
+     *  releases its Inflater when closed. */
+    static InputStream inflating(InputStream in) {
+        return new InflaterInputStream(in, new Inflater(), Blob.BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+
+    /** Returns a new empty file in the store to write an object into
+     *  before its id is known. */
+    private static File tempFile() {
+        try {
+            return File.createTempFile("tmp_obj_", null, OBJECTS);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Moves TEMP into place as the object ID, or discards it if that
+     *  object is already stored, whether loose or in a pack. */
+    private static void install(File temp, String id) {
+        if (contains(id)) {
+            temp.delete();
+            return;
+        }
+        File file = objectFile(id);
+        file.getParentFile().mkdirs();
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the file that holds (or would hold) the object ID. */
+    private static File objectFile(String id) {
+        return Utils.join(OBJECTS, id.substring(0, DIR_DIGITS),
+                id.substring(DIR_DIGITS));
+    }
+
+    /** Packs in PACKS, or null if they have not been opened yet. */
+    private static List<Pack> _packs;
+
+    /** Modification time of PACKS when _packs were opened. */
+    private static long _packsModified;
+
+    /** Most recently used parsed commits, by id, or null if not yet
+     *  created. */
+    private static LinkedHashMap<String, Commit> _commitCache;
+
+    /** Most recently used parsed trees, by id, or null if not yet
+     *  created. */
+    private static LinkedHashMap<String, Tree> _treeCache;
+}
@@ -0,0 +1,293 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/** A pack: many objects stored in one file, written by PackWriter during
+ *  gc. A pack file pack-ID.pack starts with the bytes "GPAK" and a
+ *  version number, followed by one entry per object and the SHA-1 of
+ *  everything before it, which is also the ID in its name. An entry is
+ *  a type byte (COMMIT, TREE, BLOB or DELTA), for a DELTA the offset in the
+ *  pack of the entry it is a delta against, the length of the object's
+ *  data, the length of that data compressed, and then the compressed
+ *  data itself. The data of a DELTA entry is a Delta against its base.
+ *
+ *  The index pack-ID.idx starts with the bytes "GIDX" and its version,
+ *  followed by a fanout table of FANOUT ints whose Ith entry is the
+ *  number of objects whose id starts with a byte of at most I, the
+ *  binary ids of all objects in sorted order, the offsets of their
+ *  entries as longs in the same order, and the pack's SHA-1. The index
+ *  is memory-mapped rather than read, and an id is found by a binary
+ *  search between the two fanout entries for its first byte, so opening
+ *  a pack costs the same however many objects it holds, and a lookup
+ *  only touches a few pages.
+ *  @author Edan Bash
+ */
+class Pack {
+
+    /** Bytes that start a pack file. */
+    static final byte[] PACK_MAGIC = {'G', 'P', 'A', 'K'};
+
+    /** Bytes that start a pack index file. */
+    static final byte[] INDEX_MAGIC = {'G', 'I', 'D', 'X'};
+
+    /** Version of the pack format. */
+    static final int VERSION = 1;
+
+    /** Version of the index format. */
+    static final int INDEX_VERSION = 2;
+
+    /** Number of entries in the fanout table of an index. */
+    static final int FANOUT = 256;
+
+    /** Offset of the fanout table in an index. */
+    static final int FANOUT_START = INDEX_MAGIC.length + Integer.BYTES;
+
+    /** Offset of the sorted ids in an index. */
+    static final int IDS_START = FANOUT_START + FANOUT * Integer.BYTES;
+
+    /** Length of a binary SHA-1 id. */
+    static final int ID_BYTES = 20;
+
+    /** Type of an entry holding a whole commit. */
+    static final int COMMIT = 1;
+
+    /** Type of an entry holding a whole blob. */
+    static final int BLOB = 2;
+
+    /** Type of an entry holding a blob as a delta against another entry. */
+    static final int DELTA = 3;
+
+    /** Type of an entry holding a whole tree. */
+    static final int TREE = 4;
+
+    /** Length of the longest entry header. */
+    private static final int MAX_HEADER = 1 + Long.BYTES + 2 * Integer.BYTES;
+
+    /** Mask to read a byte as unsigned. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Opens the pack whose index is INDEX. */
+    Pack(File index) {
+        _file = packFileOf(index);
+        try (FileChannel idx = FileChannel.open(index.toPath(),
+                 StandardOpenOption.READ)) {
+            _index = idx.map(FileChannel.MapMode.READ_ONLY, 0, idx.size());
+            for (int i = 0; i < INDEX_MAGIC.length; i += 1) {
+                if (_index.get(i) != INDEX_MAGIC[i]) {
+                    throw Utils.error("Unreadable pack index %s.",
+                            index.getName());
+                }
+            }
+            if (_index.getInt(INDEX_MAGIC.length) != INDEX_VERSION) {
+                throw Utils.error("Unreadable pack index %s.",
+                        index.getName());
+            }
+            _count = _index.getInt(IDS_START - Integer.BYTES);
+            _offsetsStart = IDS_START + (long) _count * ID_BYTES;
+            _channel = FileChannel.open(_file.toPath(),
+                    StandardOpenOption.READ);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the pack file whose index is INDEX. */
+    static File packFileOf(File index) {
+        String name = index.getName();
+        return Utils.join(index.getParentFile(),
+                name.substring(0, name.length() - ".idx".length())
+                + ".pack");
+    }
+
+    /** Returns true if this pack holds the object ID. */
+    boolean contains(String id) {
+        return offsetOf(ObjectStore.toBinary(id)) >= 0;
+    }
+
+    /** Returns a stream of the data of the object ID, or null if it is
+     *  not in this pack. A whole object is inflated from the pack file as
+     *  the stream is read, so a large blob is never held in memory; a
+     *  DELTA is resolved first, since applying it needs all of its base. */
+    InputStream open(String id) {
+        long offset = offsetOf(ObjectStore.toBinary(id));
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer header = readFully(offset, MAX_HEADER);
+        if (header.get() == DELTA) {
+            return new ByteArrayInputStream(readAt(offset));
+        }
+        header.getInt();
+        int length = header.getInt();
+        return ObjectStore.inflating(new BufferedInputStream(
+                new Section(offset + header.position(), length),
+                Blob.BUFFER_SIZE));
+    }
+
+    /** Returns the offset of the entry for the binary ID, or -1 if it is
+     *  not in this pack, by binary search within its fanout bucket. */
+    private long offsetOf(byte[] id) {
+        int first = id[0] & BYTE_MASK;
+        int lo = (first == 0) ? 0 : fanout(first - 1);
+        int hi = fanout(first);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareID(mid, id);
+            if (cmp == 0) {
+                return _index.getLong((int) (_offsetsStart
+                        + (long) mid * Long.BYTES));
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the Ith entry of the fanout table. */
+    private int fanout(int i) {
+        return _index.getInt(FANOUT_START + i * Integer.BYTES);
+    }
+
+    /** Returns a value that is negative, zero or positive as the Kth id
+     *  in the index is less than, equal to or greater than ID. */
+    private int compareID(int k, byte[] id) {
+        int start = IDS_START + k * ID_BYTES;
+        for (int i = 0; i < ID_BYTES; i += 1) {
+            int diff = (_index.get(start + i) & BYTE_MASK)
+                - (id[i] & BYTE_MASK);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the pack file. */
+    File getFile() {
+        return _file;
+    }
+
+    /** Releases the open pack file. */
+    void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the data of the entry at OFFSET, resolving deltas. */
+    private byte[] readAt(long offset) {
+        ByteBuffer header = readFully(offset, MAX_HEADER);
+        int type = header.get();
+        long base = (type == DELTA) ? header.getLong() : -1;
+        int size = header.getInt();
+        int length = header.getInt();
+        byte[] data = inflate(readFully(offset + header.position(), length),
+                size);
+        return (type == DELTA) ? Delta.apply(readAt(base), data) : data;
+    }
+
+    /** Returns a buffer holding at most LEN bytes of the pack starting at
+     *  OFFSET, positioned at its start. */
+    private ByteBuffer readFully(long offset, int len) {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        try {
+            while (buf.hasRemaining()) {
+                int n = _channel.read(buf, offset + buf.position());
+                if (n < 0) {
+                    break;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /** Returns the SIZE bytes that the zlib stream in COMPRESSED holds. */
+    private static byte[] inflate(ByteBuffer compressed, int size) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] result = new byte[size];
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                n += inflater.inflate(result, n, size - n);
+                if (inflater.needsInput() && n < size) {
+                    throw new DataFormatException("truncated entry");
+                }
+            }
+            return result;
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** A stream of the bytes of a range of the pack file. It reads at
+     *  its own position rather than the channel's, so that several may be
+     *  open at once. */
+    private class Section extends InputStream {
+        /** A stream of the LENGTH bytes of the pack starting at OFFSET. */
+        Section(long offset, long length) {
+            _pos = offset;
+            _end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) < 0) ? -1 : b[0] & BYTE_MASK;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (_pos >= _end) {
+                return -1;
+            }
+            int n = _channel.read(ByteBuffer.wrap(b, off,
+                    (int) Math.min(len, _end - _pos)), _pos);
+            if (n > 0) {
+                _pos += n;
+            }
+            return n;
+        }
+
+        /** Offset in the pack of the next byte to read. */
+        private long _pos;
+        /** Offset in the pack just past the range. */
+        private final long _end;
+    }
+
+    /** The pack file. */
+    private final File _file;
+
+    /** Open channel to the pack file. */
+    private final FileChannel _channel;
+
+    /** The memory-mapped index. */
+    private final MappedByteBuffer _index;
+
+    /** Number of objects in the pack. */
+    private final int _count;
+
+    /** Offset of the entry offsets in the index. */
+    private final long _offsetsStart;
+}
@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.run;
+
+/** Tests of Delta and of reading objects back from packs.
+ *  @author Edan Bash
+ */
+public class PackTest {
+
+    /** Number of random pairs of versions delta-compressed. */
+    private static final int TRIALS = 200;
+
+    /** Largest size of a random version. */
+    private static final int MAX_SIZE = 5000;
+
+    /** Number of lines of the file committed in several versions. */
+    private static final int LINES = 2000;
+
+    /** Returns a copy of BASE with a few runs of bytes changed, inserted
+     *  or deleted at random, chosen with RANDOM. */
+    private static byte[] edit(byte[] base, Random random) {
+        byte[] result = base.clone();
+        for (int k = random.nextInt(4); k > 0 && result.length > 0; k -= 1) {
+            int at = random.nextInt(result.length);
+            int cut = Math.min(random.nextInt(40), result.length - at);
+            byte[] add = new byte[random.nextInt(40)];
+            random.nextBytes(add);
+            byte[] next = new byte[result.length - cut + add.length];
+            System.arraycopy(result, 0, next, 0, at);
+            System.arraycopy(add, 0, next, at, add.length);
+            System.arraycopy(result, at + cut, next, at + add.length,
+                             result.length - at - cut);
+            result = next;
+        }
+        return result;
+    }
+
+    @Test
+    public void deltasTurnBaseIntoTarget() {
+        Random random = new Random(0);
+        for (int t = 0; t < TRIALS; t += 1) {
+            byte[] base = new byte[random.nextInt(MAX_SIZE)];
+            random.nextBytes(base);
+            byte[] target = edit(base, random);
+            byte[] delta = Delta.create(base, target);
+            assertArrayEquals(target, Delta.apply(base, delta));
+        }
+        byte[] some = {1, 2, 3};
+        assertArrayEquals(some, Delta.apply(new byte[0],
+                                            Delta.create(new byte[0], some)));
+        assertArrayEquals(new byte[0],
+                          Delta.apply(some, Delta.create(some, new byte[0])));
+        byte[] large = new byte[MAX_SIZE];
+        random.nextBytes(large);
+        assertTrue(Delta.create(large, large).length < MAX_SIZE / 10);
+    }
+
+    @Test
+    public void readsPackedObjectsAsLooseOnes() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            File file = new File(dir, "f.txt");
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < LINES; i += 1) {
+                text.append("line ").append(i).append('\n');
+            }
+            String[] versions = new String[3];
+            for (int v = 0; v < versions.length; v += 1) {
+                versions[v] = text.toString().replace("line " + v + "\n",
+                                                      "changed\n");
+                Utils.writeContents(file, versions[v]);
+                Utils.writeContents(new File(dir, "v" + v + ".txt"), "" + v);
+                run(dir, "add", "f.txt");
+                run(dir, "add", "v" + v + ".txt");
+                run(dir, "commit", "version " + v);
+            }
+            String log = run(dir, "log");
+            String[] ids = new String[versions.length];
+            for (int v = 0; v < versions.length; v += 1) {
+                ids[v] = log.split("\n")[(versions.length - 1 - v) * 5 + 1]
+                    .substring(7);
+            }
+            String globalLog = run(dir, "global-log");
+            String diff = run(dir, "diff", ids[0], ids[2]);
+
+            assertEquals("", run(dir, "gc"));
+            File objects = new File(dir, ".gitlet/objects");
+            assertEquals(0, looseObjects(objects));
+            assertEquals(log, run(dir, "log"));
+            assertEquals(globalLog, run(dir, "global-log"));
+            assertEquals(diff, run(dir, "diff", ids[0], ids[2]));
+            for (int v = 0; v < versions.length; v += 1) {
+                run(dir, "checkout", ids[v], "--", "f.txt");
+                assertEquals(versions[v], Utils.readContentsAsString(file));
+            }
+
+            Utils.writeContents(file, versions[1]);
+            run(dir, "add", "f.txt");
+            assertEquals(0, looseObjects(objects));
+            Utils.writeContents(file, "new\n");
+            run(dir, "add", "f.txt");
+            run(dir, "commit", "loose");
+            assertTrue(looseObjects(objects) > 0);
+            run(dir, "checkout", ids[0], "--", "f.txt");
+            assertEquals(versions[0], Utils.readContentsAsString(file));
+            run(dir, "checkout", "--", "f.txt");
+            assertEquals("new\n", Utils.readContentsAsString(file));
+            assertEquals(diff, run(dir, "diff", ids[0], ids[2]));
+        });
+    }
+
+    @Test
+    public void streamsLargePackedBlobs() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            File file = new File(dir, "large.txt");
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; text.length() <= 4 * Blob.BUFFER_SIZE; i += 1) {
+                text.append(i * i).append('\n');
+            }
+            Utils.writeContents(file, text.toString());
+            run(dir, "add", "large.txt");
+            run(dir, "commit", "large");
+            assertEquals("", run(dir, "gc"));
+            assertEquals(0, looseObjects(new File(dir, ".gitlet/objects")));
+            Utils.writeContents(file, "");
+            run(dir, "checkout", "--", "large.txt");
+            assertEquals(text.toString(), Utils.readContentsAsString(file));
+        });
+    }
+
+    /** Returns the number of loose objects in the store OBJECTS. */
+    private static int looseObjects(File objects) {
+        int result = 0;
+        for (File sub : objects.listFiles()) {
+            if (!sub.getName().equals("pack")) {
+                result += sub.list().length;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,230 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/** Writes a Pack holding a given list of objects. Blobs are written in
+ *  the order given, so callers put successive versions of the same file
+ *  next to each other, and each blob is tried as a Delta against the last
+ *  WINDOW blobs written; the smallest delta is kept if it saves at least
+ *  half the size of the blob. Blobs larger than MAX_PACKED_SIZE are left
+ *  out of the pack, so packing never holds more than a window of bounded
+ *  blobs in memory.
+ *  @author Edan Bash
+ */
+class PackWriter {
+
+    /** Number of preceding blobs each blob is tried as a delta against. */
+    static final int WINDOW = 10;
+
+    /** Longest chain of deltas an entry may need to be read. */
+    static final int MAX_DEPTH = 50;
+
+    /** Largest blob that is packed; larger ones stay loose. */
+    static final int MAX_PACKED_SIZE = 1 << 24;
+
+    /** Radix of hexadecimal ids. */
+    private static final int HEX = 16;
+
+    /** A blob already written to the pack, kept as a delta base. */
+    private static class Written {
+        /** A written blob with DATA at OFFSET, needing DEPTH deltas. */
+        Written(byte[] data, long offset, int depth) {
+            _data = data;
+            _offset = offset;
+            _depth = depth;
+        }
+
+        /** Contents of the blob. */
+        private final byte[] _data;
+        /** Offset of the blob's entry in the pack. */
+        private final long _offset;
+        /** Number of deltas that must be applied to read the blob. */
+        private final int _depth;
+    }
+
+    /** Writes a new pack into DIR holding the commits COMMITIDS, the trees
+     *  TREEIDS and the blobs BLOBIDS, and returns its index file. */
+    static File write(File dir, List<String> commitIDs,
+                      List<String> treeIDs, List<String> blobIDs) {
+        dir.mkdirs();
+        PackWriter writer = new PackWriter(dir);
+        try {
+            for (String id : commitIDs) {
+                writer.add(id, Pack.COMMIT, ObjectStore.readData(id), -1);
+            }
+            for (String id : treeIDs) {
+                writer.add(id, Pack.TREE, ObjectStore.readData(id), -1);
+            }
+            ArrayDeque<Written> window = new ArrayDeque<>();
+            for (String id : blobIDs) {
+                byte[] data = ObjectStore.readData(id, MAX_PACKED_SIZE);
+                if (data != null) {
+                    window.addLast(writer.addBlob(id, data, window));
+                    if (window.size() > WINDOW) {
+                        window.removeFirst();
+                    }
+                }
+            }
+            return writer.finish();
+        } catch (IOException excp) {
+            writer.abort();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** A writer for a new pack in DIR. */
+    private PackWriter(File dir) {
+        _dir = dir;
+        _offsets = new TreeMap<>();
+        _deflater = new Deflater(Config.get(Config.COMPRESSION));
+        try {
+            _md = MessageDigest.getInstance("SHA-1");
+            _temp = File.createTempFile("tmp_pack_", null, dir);
+            _out = new DataOutputStream(new DigestOutputStream(
+                    new BufferedOutputStream(
+                            Files.newOutputStream(_temp.toPath()),
+                            Blob.BUFFER_SIZE), _md));
+            _out.write(Pack.PACK_MAGIC);
+            _out.writeInt(Pack.VERSION);
+            _offset = Pack.PACK_MAGIC.length + Integer.BYTES;
+        } catch (IOException | NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the blob ID with contents DATA, as a delta against one of
+     *  the blobs in WINDOW if that is much smaller, and returns it. */
+    private Written addBlob(String id, byte[] data, ArrayDeque<Written> window)
+        throws IOException {
+        Written base = null;
+        byte[] best = null;
+        for (Written cand : window) {
+            if (cand._depth >= MAX_DEPTH) {
+                continue;
+            }
+            byte[] delta = Delta.create(cand._data, data);
+            if (best == null || delta.length < best.length) {
+                base = cand;
+                best = delta;
+            }
+        }
+        long offset = _offset;
+        if (best != null && best.length < data.length / 2) {
+            add(id, Pack.DELTA, best, base._offset);
+            return new Written(data, offset, base._depth + 1);
+        }
+        add(id, Pack.BLOB, data, -1);
+        return new Written(data, offset, 0);
+    }
+
+    /** Writes an entry for the object ID of TYPE holding DATA, a delta
+     *  against the entry at BASE if TYPE is DELTA. */
+    private void add(String id, int type, byte[] data, long base)
+        throws IOException {
+        _offsets.put(id, _offset);
+        _deflater.reset();
+        _deflater.setInput(data);
+        _deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buf = new byte[Blob.BUFFER_SIZE];
+        while (!_deflater.finished()) {
+            int n = _deflater.deflate(buf);
+            compressed.write(buf, 0, n);
+        }
+        _out.writeByte(type);
+        _offset += 1;
+        if (type == Pack.DELTA) {
+            _out.writeLong(base);
+            _offset += Long.BYTES;
+        }
+        _out.writeInt(data.length);
+        _out.writeInt(compressed.size());
+        compressed.writeTo(_out);
+        _offset += 2 * Integer.BYTES + compressed.size();
+    }
+
+    /** Writes the trailer of the pack and its index, then moves both into
+     *  place, the index last so readers never see a partial pack. Returns
+     *  the index file. */
+    private File finish() throws IOException {
+        _out.flush();
+        byte[] checksum = _md.digest();
+        _out.write(checksum);
+        _out.close();
+        _deflater.end();
+        String name = "pack-" + ObjectStore.toHex(checksum, 0);
+        File index = File.createTempFile("tmp_idx_", null, _dir);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                         Files.newOutputStream(index.toPath())))) {
+            out.write(Pack.INDEX_MAGIC);
+            out.writeInt(Pack.INDEX_VERSION);
+            int[] fanout = new int[Pack.FANOUT];
+            for (String id : _offsets.keySet()) {
+                fanout[Integer.parseInt(id.substring(0, 2), HEX)] += 1;
+            }
+            for (int i = 0, total = 0; i < Pack.FANOUT; i += 1) {
+                total += fanout[i];
+                out.writeInt(total);
+            }
+            for (String id : _offsets.keySet()) {
+                out.write(ObjectStore.toBinary(id));
+            }
+            for (long offset : _offsets.values()) {
+                out.writeLong(offset);
+            }
+            out.write(checksum);
+        }
+        Files.move(_temp.toPath(), Utils.join(_dir, name + ".pack").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        File result = Utils.join(_dir, name + ".idx");
+        Files.move(index.toPath(), result.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        return result;
+    }
+
+    /** Discards the partially written pack. */
+    private void abort() {
+        try {
+            _out.close();
+        } catch (IOException excp) {
+            /* Nothing more can be done; the file is deleted anyway. */
+        }
+        _deflater.end();
+        _temp.delete();
+    }
+
+    /** Directory the pack is written into. */
+    private final File _dir;
+
+    /** Temporary file the pack is written to. */
+    private File _temp;
+
+    /** Stream writing to _temp. */
+    private DataOutputStream _out;
+
+    /** Digest of everything written to _out. */
+    private MessageDigest _md;
+
+    /** Offset at which the next entry will be written. */
+    private long _offset;
+
+    /** Compressor for entry data. */
+    private final Deflater _deflater;
+
+    /** Maps the id of each object written to the offset of its entry. */
+    private final TreeMap<String, Long> _offsets;
+}
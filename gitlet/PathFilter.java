@@ -0,0 +1,147 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/** Bloom filters of the files a commit changed, stored in the
+ *  CommitGraph. A filter has BITS_PER_PATH bits for each path, rounded up
+ *  to whole bytes, and sets HASHES bits per path, chosen by double hashing
+ *  with two seeded Murmur3 hashes of its UTF-8 bytes. A filter can say
+ *  that a path was certainly not changed; a yes may be a false positive
+ *  (about one in a hundred), so callers must then compare the commits.
+ *  Commits changing more than MAX_PATHS files get an empty filter, which
+ *  is taken to mean "maybe" for every path.
+ *  @author Edan Bash
+ */
+class PathFilter {
+
+    /** Number of bits per path. */
+    static final int BITS_PER_PATH = 10;
+
+    /** Number of bits set per path. */
+    static final int HASHES = 7;
+
+    /** Largest number of paths given a real filter. */
+    static final int MAX_PATHS = 512;
+
+    /** Seed of the first hash. */
+    private static final int SEED1 = 0x293ae76f;
+
+    /** Seed of the second hash. */
+    private static final int SEED2 = 0x7e646e2c;
+
+    /** Murmur3 multiplier applied to each block before rotating. */
+    private static final int C1 = 0xcc9e2d51;
+
+    /** Murmur3 multiplier applied to each block after rotating. */
+    private static final int C2 = 0x1b873593;
+
+    /** Murmur3 constant added to the hash after each block. */
+    private static final int N = 0xe6546b64;
+
+    /** Murmur3 multiplier of the hash after each block. */
+    private static final int M = 5;
+
+    /** Murmur3 rotation of each block. */
+    private static final int R1 = 15;
+
+    /** Murmur3 rotation of the hash after each block. */
+    private static final int R2 = 13;
+
+    /** First multiplier of the final mix. */
+    private static final int MIX1 = 0x85ebca6b;
+
+    /** Second multiplier of the final mix. */
+    private static final int MIX2 = 0xc2b2ae35;
+
+    /** First shift of the final mix. */
+    private static final int SHIFT1 = 16;
+
+    /** Second shift of the final mix. */
+    private static final int SHIFT2 = 13;
+
+    /** Mask to read a byte as unsigned. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Number of bits in a byte. */
+    private static final int BYTE_BITS = 8;
+
+    /** Returns a filter holding PATHS. */
+    static byte[] create(Collection<String> paths) {
+        if (paths.size() > MAX_PATHS) {
+            return new byte[0];
+        }
+        int bytes = Math.max(1, (paths.size() * BITS_PER_PATH
+                                 + BYTE_BITS - 1) / BYTE_BITS);
+        byte[] result = new byte[bytes];
+        long bits = (long) bytes * BYTE_BITS;
+        for (String path : paths) {
+            byte[] key = path.getBytes(StandardCharsets.UTF_8);
+            int h1 = murmur3(key, SEED1), h2 = murmur3(key, SEED2);
+            for (int i = 0; i < HASHES; i += 1) {
+                int bit = bit(h1, h2, i, bits);
+                result[bit / BYTE_BITS] |= 1 << (bit % BYTE_BITS);
+            }
+        }
+        return result;
+    }
+
+    /** Returns false if PATH is certainly not in the filter held in
+     *  bytes START .. END-1 of DATA. */
+    static boolean mightContain(ByteBuffer data, int start, int end,
+                                String path) {
+        if (start == end) {
+            return true;
+        }
+        long bits = (long) (end - start) * BYTE_BITS;
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int h1 = murmur3(key, SEED1), h2 = murmur3(key, SEED2);
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = bit(h1, h2, i, bits);
+            if ((data.get(start + bit / BYTE_BITS) & (1 << (bit % BYTE_BITS)))
+                == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the Ith bit chosen for a path with hashes H1 and H2 in a
+     *  filter of BITS bits. */
+    private static int bit(int h1, int h2, int i, long bits) {
+        return (int) (Integer.toUnsignedLong(h1 + i * h2) % bits);
+    }
+
+    /** Returns the 32-bit Murmur3 hash of KEY with SEED. */
+    static int murmur3(byte[] key, int seed) {
+        int h = seed;
+        int blocks = key.length / Integer.BYTES;
+        for (int i = 0; i < blocks; i += 1) {
+            int k = 0;
+            for (int j = Integer.BYTES - 1; j >= 0; j -= 1) {
+                k = (k << BYTE_BITS)
+                    | (key[i * Integer.BYTES + j] & BYTE_MASK);
+            }
+            h ^= scramble(k);
+            h = Integer.rotateLeft(h, R2) * M + N;
+        }
+        int k = 0;
+        for (int j = key.length - 1; j >= blocks * Integer.BYTES; j -= 1) {
+            k = (k << BYTE_BITS) | (key[j] & BYTE_MASK);
+        }
+        h ^= scramble(k);
+        h ^= key.length;
+        h ^= h >>> SHIFT1;
+        h *= MIX1;
+        h ^= h >>> SHIFT2;
+        h *= MIX2;
+        h ^= h >>> SHIFT1;
+        return h;
+    }
+
+    /** Returns the Murmur3 scrambling of the block K. */
+    private static int scramble(int k) {
+        return Integer.rotateLeft(k * C1, R1) * C2;
+    }
+}
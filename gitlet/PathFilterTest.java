@@ -0,0 +1,127 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.run;
+
+/** Tests that PathFilters never rule out a path they hold.
+ *  @author Edan Bash
+ */
+public class PathFilterTest {
+
+    /** Number of random filters made. */
+    private static final int TRIALS = 200;
+
+    /** Number of paths not in a filter tried against it. */
+    private static final int OTHERS = 1000;
+
+    /** Bytes before a filter in the buffer it is read from, so that it is
+     *  not read from the start. */
+    private static final int PADDING = 3;
+
+    /** Number of files in the repo whose log is filtered. */
+    private static final int FILES = 8;
+
+    /** Number of commits in the repo whose log is filtered. */
+    private static final int COMMITS = 12;
+
+    /** Returns true if the filter FILTER might hold PATH, reading it from
+     *  inside a larger buffer. */
+    private static boolean mightContain(byte[] filter, String path) {
+        ByteBuffer data = ByteBuffer.allocate(filter.length + 2 * PADDING);
+        data.position(PADDING);
+        data.put(filter);
+        return PathFilter.mightContain(data, PADDING,
+                                       PADDING + filter.length, path);
+    }
+
+    @Test
+    public void neverRulesOutPathsItHolds() {
+        Random random = new Random(0);
+        int falsePositives = 0;
+        int tried = 0;
+        for (int t = 0; t < TRIALS; t += 1) {
+            Set<String> paths = new HashSet<>();
+            int size = random.nextInt(PathFilter.MAX_PATHS + 1);
+            while (paths.size() < size) {
+                paths.add("dir" + random.nextInt(10) + "/f\u00e9"
+                          + random.nextInt());
+            }
+            byte[] filter = PathFilter.create(paths);
+            assertTrue(filter.length > 0);
+            for (String path : paths) {
+                assertTrue(path, mightContain(filter, path));
+            }
+            if (size >= PathFilter.MAX_PATHS / 2) {
+                for (int i = 0; i < OTHERS; i += 1) {
+                    if (mightContain(filter, "other/" + random.nextInt())) {
+                        falsePositives += 1;
+                    }
+                    tried += 1;
+                }
+            }
+        }
+        assertTrue(falsePositives + " of " + tried,
+                   falsePositives < tried / 20);
+    }
+
+    @Test
+    public void keepsEveryPathWhenTooManyChanged() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i <= PathFilter.MAX_PATHS; i += 1) {
+            paths.add("f" + i);
+        }
+        byte[] filter = PathFilter.create(paths);
+        assertEquals(0, filter.length);
+        assertTrue(mightContain(filter, "f0"));
+        assertTrue(mightContain(filter, "anything"));
+    }
+
+    @Test
+    public void hashesLikeMurmur3() {
+        assertEquals(0, PathFilter.murmur3(new byte[0], 0));
+        assertEquals(0x514e28b7, PathFilter.murmur3(new byte[0], 1));
+        assertEquals(0x248bfa47, PathFilter.murmur3(
+                "hello".getBytes(StandardCharsets.UTF_8), 0));
+    }
+
+    @Test
+    public void filteredLogMissesNoCommits() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            Random random = new Random(0);
+            for (int c = 0; c < COMMITS; c += 1) {
+                for (int f = 0; f < FILES; f += 1) {
+                    if (c == 0 || random.nextInt(3) == 0) {
+                        Utils.writeContents(new File(dir, "f" + f),
+                                            "commit " + c + "\n");
+                        run(dir, "add", "f" + f);
+                    }
+                }
+                run(dir, "commit", "commit " + c);
+            }
+            String[] logs = new String[FILES];
+            for (int f = 0; f < FILES; f += 1) {
+                logs[f] = run(dir, "log", "--", "f" + f);
+                assertTrue(logs[f].contains("commit 0\n"));
+            }
+            run(dir, "gc");
+            assertTrue(new File(dir, ".gitlet/commit-graph").isFile());
+            for (int f = 0; f < FILES; f += 1) {
+                assertEquals(logs[f], run(dir, "log", "--", "f" + f));
+            }
+        });
+    }
+}
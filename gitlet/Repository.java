@@ -1,20 +1,32 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 
 /** The Repository class.
  *  @author Edan Bash
  */
-public class Repository implements Serializable {
+public class Repository {
 
     /** Current working directory of repo. */
     private final File _CWD = new File(".");
@@ -31,22 +43,26 @@ public class Repository implements Serializable {
     /** File that stores head commits of all branches. */
     private final File _BRANCHES = Utils.join(_GITLET, "branches");
 
-    /** File that stores all commits with their IDS. */
-    private final File _COMMITS = Utils.join(_GITLET, "commits");
-
-    /** File that stores head commit of repo. */
+    /** File that stores the ID of the head commit of repo. */
     private final File _HEAD = Utils.join(_GITLET, "head");
 
     /** File that stores current branch of repo. */
     private final File _CURRBRANCH = Utils.join(_GITLET, "currBranch");
 
-    /** Constructor for Repository Class. */
+    /** Status of a working file that is listed as untracked. */
+    private static final String UNTRACKED = "untracked";
+
+    /** Constructor for Repository Class. The state of the repo is only
+     * read by the command run on it. */
     public Repository() {
-        _addStage = new HashMap<>();
-        _rmStage = new HashMap<>();
-        _branches = new HashMap<>();
-        _commits = new HashMap<>();
-        init();
+        _addStage = new UndoableMap();
+        _rmStage = new UndoableMap();
+        _branches = new UndoableMap();
+    }
+
+    /** Returns true if the current directory holds a repo. */
+    public boolean exists() {
+        return _GITLET.isDirectory();
     }
 
     /** Creates a new Gitlet version-control system in the current directory.
@@ -60,27 +76,35 @@ public class Repository implements Serializable {
      * Since the initial commit in all repositories created by Gitlet will
      * have exactly the same content, it follows that all repositories will
      * automatically share this commit (they will all have the same UID) and
-     * all commits in all repositories will trace back to it. */
-    private void init() {
+     * all commits in all repositories will trace back to it.
+     *
+     * @param args Argument array from command line
+     */
+    public void initCommand(String[] args) {
+        if (exists()) {
+            throw new GitletException("A Gitlet version-control "
+                    + "system already exists in the current directory.");
+        }
         _GITLET.mkdir();
+        ObjectStore.OBJECTS.mkdir();
         try {
             boolean a = _ADDSTAGE.createNewFile();
             boolean b = _RMSTAGE.createNewFile();
             boolean c = _BRANCHES.createNewFile();
-            boolean d = _COMMITS.createNewFile();
-            boolean e = _HEAD.createNewFile();
+            boolean d = _HEAD.createNewFile();
         } catch (IOException e) {
             System.out.println("Could not create file");
         }
 
-        Commit initialCom = new Commit("initial commit", null,
-                new HashMap<>(), new Date(0));
+        Commit initialCom = new Commit("initial commit", null, null,
+                new Date(0));
         initialCom.updateCommit(_addStage, _rmStage);
-        _branches.put("master", initialCom);
-        _commits.put(initialCom.getHashCode(), initialCom);
+        storeCommit(initialCom);
+        _branches.put("master", initialCom.getHashCode());
         _currBranch = "master";
-        _head = _branches.get("master");
+        _head = initialCom;
         saveCurrentState();
+        Upgrade.writeFormat();
     }
 
 
@@ -105,7 +129,7 @@ public class Repository implements Serializable {
         retreiveState();
         boolean alreadyStaged = (_addStage.containsKey(args[1]));
         if (_head.contains(args[1]) && !_rmStage.containsKey(args[1])
-                && sameContents(_head.getBlobFromFile(args[1]), args[1])) {
+                && sameContents(_head.getBlobID(args[1]), args[1])) {
             if (alreadyStaged) {
                 _addStage.remove(args[1]);
             }
@@ -114,7 +138,10 @@ public class Repository implements Serializable {
             if (_rmStage.containsKey(args[1])) {
                 _rmStage.remove(args[1]);
             } else {
-                _addStage.put(args[1], new Blob(getFileContent(args[1])));
+                File file = Utils.join(_CWD, args[1]);
+                String id = ObjectStore.writeBlob(file);
+                _stats.record(args[1], file, id);
+                _addStage.put(args[1], id);
             }
         }
         saveCurrentState();
@@ -142,11 +169,21 @@ public class Repository implements Serializable {
             throw new GitletException("Please enter a commit message.");
         }
         retreiveState();
-        Commit commit = new Commit(args[1], _head, _head.getBlobs(),
-                new Date());
+        makeCommit(args[1], null);
+    }
+
+    /** Creates a commit with message MSG from the staging area on top of
+     * _head, with MERGEPARENT as its second parent if it is non-null,
+     * and advances the current branch to it. */
+    private void makeCommit(String msg, Commit mergeParent) {
+        Commit commit = new Commit(msg, _head.getHashCode(),
+                _head.getTree(), new Date());
+        if (mergeParent != null) {
+            commit.setMergeParent(mergeParent);
+        }
         commit.updateCommit(_addStage, _rmStage);
-        _branches.put(_currBranch, commit);
-        _commits.put(commit.getHashCode(), commit);
+        storeCommit(commit);
+        _branches.put(_currBranch, commit.getHashCode());
         _head = commit;
         _addStage.clear();
         _rmStage.clear();
@@ -166,7 +203,7 @@ public class Repository implements Serializable {
         if (_addStage.containsKey(args[1])) {
             _addStage.remove(args[1]);
         } else if (_head.contains(args[1])) {
-            _rmStage.put(args[1], _head.getBlobFromFile(args[1]));
+            _rmStage.put(args[1], _head.getBlobID(args[1]));
             deleteFile(args[1]);
         } else {
             throw new GitletException("No reason to remove the file.");
@@ -186,34 +223,137 @@ public class Repository implements Serializable {
      * @param args Argument array from command line
      */
     public void logCommand(String[] args) {
+        if (args.length == 3 && args[1].equals("--")) {
+            retreiveState();
+            logPath(args[2]);
+            return;
+        }
         validateNumArgs(args, 1);
         retreiveState();
-        logHelper(_head);
+        logHelper(_head.getHashCode());
     }
 
-    /** Prints out correct format for logCommand starting with COM. */
-    public void logHelper(Commit com) {
-        Commit curr = com;
-        while (curr != null) {
-            System.out.println("===");
-            System.out.println("commit " + curr.getHashCode());
-            System.out.println("Date: " + curr.getDate());
-            System.out.println(curr.getMsg());
-            System.out.println();
-            curr = curr.getParent();
+    /** Like log, but only shows the commits in the history of the head
+     * commit that change FILENAME from their parent. The changed-path
+     * filters of the CommitGraph rule out most other commits without
+     * reading them. */
+    private void logPath(String fileName) {
+        PrintWriter out = bufferedOut();
+        try {
+            String curr = _head.getHashCode();
+            while (curr != null) {
+                String parent = CommitGraph.node(curr).getParentID();
+                if (CommitGraph.mayHaveChanged(curr, fileName)) {
+                    Commit com = ObjectStore.readCommit(curr);
+                    String parentBlob = (parent == null) ? null
+                            : ObjectStore.readCommit(parent)
+                            .getBlobID(fileName);
+                    String blob = com.getBlobID(fileName);
+                    if ((blob == null) ? parentBlob != null
+                            : !blob.equals(parentBlob)) {
+                        printLogEntry(out, curr, com);
+                    }
+                }
+                curr = parent;
+            }
+        } finally {
+            out.flush();
         }
     }
 
-    /** Like log, except displays information about all commits ever made.
-     * The order of the commits does not matter.
+    /** Prints out correct format for logCommand starting with the commit
+     * ID. The history is followed through the CommitGraph; commits are
+     * only read for their messages. */
+    public void logHelper(String id) {
+        PrintWriter out = bufferedOut();
+        try {
+            String curr = id;
+            while (curr != null) {
+                printLogEntry(out, curr, ObjectStore.readCommit(curr));
+                curr = CommitGraph.node(curr).getParentID();
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /** Prints the log entry of COM, whose id is ID, on OUT. */
+    private void printLogEntry(PrintWriter out, String id, Commit com) {
+        out.println("===");
+        out.println("commit " + id);
+        out.println("Date: " + com.getDate());
+        out.println(com.getMsg());
+        out.println();
+    }
+
+    /** Returns a buffered writer on the standard output, which must be
+     * flushed when done. */
+    private static PrintWriter bufferedOut() {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out)));
+    }
+
+    /** Like log, except displays information about all commits ever made,
+     * each once, newest first. The options -n [count] and --since
+     * [yyyy-MM-dd] show at most count commits, and only commits made on
+     * or after the given day. Entries are printed as they are read.
      *
      * @param args Argument array from command line
      */
     public void globalLogCommand(String[] args) {
-        validateNumArgs(args, 1);
+        int limit = Integer.MAX_VALUE;
+        long since = Long.MIN_VALUE;
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new GitletException("Incorrect operands.");
+            } else if (args[i].equals("-n")) {
+                limit = parseCount(args[i + 1]);
+            } else if (args[i].equals("--since")) {
+                since = parseDay(args[i + 1]);
+            } else {
+                throw new GitletException("Incorrect operands.");
+            }
+        }
         retreiveState();
-        for (Commit com: _commits.values()) {
-            logHelper(com);
+        List<String> ids = allCommitIDs();
+        HashSet<String> seen = new HashSet<>();
+        PrintWriter out = bufferedOut();
+        try {
+            for (int i = ids.size() - 1; i >= 0 && limit > 0; i -= 1) {
+                String id = ids.get(i);
+                if (seen.add(id)
+                        && CommitGraph.node(id).getTimestamp() >= since) {
+                    printLogEntry(out, id, ObjectStore.readCommit(id));
+                    limit -= 1;
+                }
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /** Returns COUNT as a number of commits to show. */
+    private static int parseCount(String count) {
+        try {
+            int result = Integer.parseInt(count);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw new GitletException("Incorrect operands.");
+    }
+
+    /** Returns the time at which DAY, written as yyyy-MM-dd, starts in the
+     * local time zone, in milliseconds since the epoch. */
+    private static long parseDay(String day) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setLenient(false);
+        try {
+            return format.parse(day).getTime();
+        } catch (ParseException excp) {
+            throw new GitletException("Incorrect operands.");
         }
     }
 
@@ -221,20 +361,30 @@ public class Repository implements Serializable {
      * one per line. If there are multiple such commits, it prints the ids
      * out on separate lines. The commit message is a single operand; to
      * indicate a multiword message, put the operand in quotation marks.
+     * With --word, finds the commits whose messages contain all the words
+     * of the operand, ignoring case and punctuation, and with --prefix,
+     * those with a word starting with it. All three are answered from
+     * the MessageIndex.
      *
      * @param args Argument array from command line
      */
     public void findCommand(String[] args) {
-        validateNumArgs(args, 2);
-        retreiveState();
-        boolean found = false;
-        for (Commit com: _commits.values()) {
-            if (com.getMsg().equals(args[1])) {
-                found = true;
-                System.out.println(com.getHashCode());
-            }
+        List<String> ids;
+        if (args.length == 3 && args[1].equals("--word")) {
+            retreiveState();
+            ids = MessageIndex.findWords(args[2]);
+        } else if (args.length == 3 && args[1].equals("--prefix")) {
+            retreiveState();
+            ids = MessageIndex.findPrefix(args[2]);
+        } else {
+            validateNumArgs(args, 2);
+            retreiveState();
+            ids = MessageIndex.findExact(args[1]);
+        }
+        for (String id: ids) {
+            System.out.println(id);
         }
-        if (!found) {
+        if (ids.isEmpty()) {
             System.out.println("Found no commit with that message.");
         }
     }
@@ -246,38 +396,62 @@ public class Repository implements Serializable {
      * @param args Argument array from command line
      */
     public void statusCommand(String[] args) {
-        validateNumArgs(args, 1);
+        boolean aheadBehind = args.length == 2
+                && args[1].equals("--ahead-behind");
+        if (!aheadBehind) {
+            validateNumArgs(args, 1);
+        }
         retreiveState();
         System.out.println("=== Branches ===");
-        statusHelper(new ArrayList<>(_branches.keySet()), true);
+        if (aheadBehind) {
+            aheadBehindHelper();
+        } else {
+            statusHelper(new ArrayList<>(_branches.keySet()), true);
+        }
         System.out.println("=== Staged Files ===");
         statusHelper(new ArrayList<>(_addStage.keySet()));
         System.out.println("=== Removed Files ===");
         statusHelper(new ArrayList<>(_rmStage.keySet()));
 
         System.out.println("=== Modifications Not Staged For Commit ===");
-        List<String> files = Utils.plainFilenamesIn(_CWD);
+        List<String> files = workingFiles();
+        List<String> states = Workers.map(files, this::fileStatus);
         List<String> untracked = new ArrayList<>();
-        for (String fileName: files) {
-            if ((_head.contains(fileName)
-                    && !sameContents(_head.getBlobFromFile(fileName), fileName)
-                    && !_addStage.containsKey(fileName))
-                    || (_addStage.containsKey(fileName)
-                    && !sameContents(_addStage.get(fileName), fileName))) {
-                System.out.println(fileName + " (modified)");
-            } else if (!fileExists(fileName) && (_addStage.containsKey(fileName)
-                    || (!_rmStage.containsKey(fileName)
-                    && _head.contains(fileName)))) {
-                System.out.println(fileName + " (deleted)");
-            } else if (!_addStage.containsKey(fileName)
-                    && !_rmStage.containsKey(fileName)
-                    && !_head.contains(fileName)) {
-                untracked.add(fileName);
+        for (int i = 0; i < files.size(); i += 1) {
+            String state = states.get(i);
+            if (UNTRACKED.equals(state)) {
+                untracked.add(files.get(i));
+            } else if (state != null) {
+                System.out.println(files.get(i) + state);
             }
         }
         System.out.println();
         System.out.println("=== Untracked Files ===");
         statusHelper(untracked);
+        saveStats();
+    }
+
+    /** Returns how the working file FILENAME is listed by statusCommand:
+     *  the suffix printed after it under modifications, UNTRACKED, or null
+     *  if it is not listed. Hashes the file if need be, so it is called
+     *  for many files in parallel and must only read the repo's state. */
+    private String fileStatus(String fileName) {
+        if ((_head.contains(fileName)
+                && !sameContents(_head.getBlobID(fileName), fileName)
+                && !_addStage.containsKey(fileName))
+                || (_addStage.containsKey(fileName)
+                && !sameContents(_addStage.get(fileName), fileName))) {
+            return " (modified)";
+        } else if (!fileExists(fileName) && (_addStage.containsKey(fileName)
+                || (!_rmStage.containsKey(fileName)
+                && _head.contains(fileName)))) {
+            return " (deleted)";
+        } else if (!_addStage.containsKey(fileName)
+                && !_rmStage.containsKey(fileName)
+                && !_head.contains(fileName)) {
+            return UNTRACKED;
+        }
+        return null;
     }
 
     /** Prints out file NAMES in correct format for statusCommand.
@@ -293,6 +467,28 @@ public class Repository implements Serializable {
         System.out.println();
     }
 
+    /** Prints the branches for status --ahead-behind, each other branch
+     * followed by how many commits it has that the current branch does
+     * not (ahead) and how many the current branch has that it does not
+     * (behind). The counts come from the reachability Bitmaps. */
+    private void aheadBehindHelper() {
+        Bitmaps bitmaps = Bitmaps.load();
+        Bitmaps.Reach current = bitmaps.reach(_head.getHashCode());
+        List<String> names = new ArrayList<>(_branches.keySet());
+        Collections.sort(names);
+        for (String name: names) {
+            if (name.equals(_currBranch)) {
+                System.out.println("*" + name);
+            } else {
+                Bitmaps.Reach other = bitmaps.reach(_branches.get(name));
+                System.out.println(name + " [ahead "
+                        + other.countNotIn(current) + ", behind "
+                        + current.countNotIn(other) + "]");
+            }
+        }
+        System.out.println();
+    }
+
     /** Calls statusHelper on NAMES with branch set to false. */
     private void statusHelper(List<String> names) {
         statusHelper(names, false);
@@ -349,7 +545,7 @@ public class Repository implements Serializable {
      * cleared, unless the checked-out branch is the current branch.
      * */
     private void checkoutBranch(String branchName) {
-        Commit branchHead = _branches.get(branchName);
+        Commit branchHead = getBranchHead(branchName);
         if (branchHead == null) {
             throw new GitletException("No such branch exists.");
         } else if (_currBranch.equals(branchName)) {
@@ -371,36 +567,117 @@ public class Repository implements Serializable {
             throw new GitletException("File does not exist in that commit.");
         } else {
             if (!fileExists(fileName)) {
+                file.getParentFile().mkdirs();
                 try {
                     file.createNewFile();
                 } catch (IOException e) {
                     System.out.println("Could not create file");
                 }
             }
-            Utils.writeContents(file,
-                    com.getFileContents(fileName));
+            ObjectStore.copyBlob(com.getBlobID(fileName), file);
+            _stats.record(fileName, file, com.getBlobID(fileName));
         }
     }
 
-    /** Puts all files in Commit COM in _CWD. */
+    /** Puts all files in Commit COM in _CWD, overwriting the versions
+     * already there. The files whose blobs differ between _head and COM
+     * are found with Tree.diff, which skips every directory the two
+     * commits share; of the other files of COM, only those whose working
+     * copies are missing or no longer match, as told by the StatCache, are
+     * written. A file that COM tracks where _head tracks a directory, or
+     * the reverse, replaces it once the files _head tracks there are
+     * deleted. The files are written on Workers threads, once no
+     * untracked file is found in the way and the files COM lacks are
+     * deleted. */
     private void checkoutCommit(Commit com) {
-        for (String fileName: com.getBlobs().keySet()) {
-            if (!_head.contains(fileName) && fileExists(fileName)) {
-                throw new GitletException("There is an untracked file "
-                        + "in the way; delete it or add and commit it first.");
+        List<String> changed = new ArrayList<>();
+        Tree.diff(_head.getTree(), com.getTree(), "", changed);
+        List<String> written = new ArrayList<>();
+        for (String fileName: changed) {
+            if (com.contains(fileName)) {
+                written.add(fileName);
+            }
+        }
+        Map<String, Set<String>> files = new HashMap<>();
+        Tree.collect(com.getTree(), "", new HashSet<>(), new HashSet<>(),
+                files);
+        files.keySet().removeAll(changed);
+        List<String> kept = new ArrayList<>(files.keySet());
+        List<Boolean> dirty = Workers.map(kept, fileName ->
+                !sameContents(com.getBlobID(fileName), fileName));
+        for (int i = 0; i < kept.size(); i += 1) {
+            if (dirty.get(i)) {
+                written.add(kept.get(i));
             }
-            checkoutFile(com, "--", fileName);
         }
-        for (String fileName: _head.getBlobs().keySet()) {
+        for (String fileName: written) {
+            checkInTheWay(fileName);
+        }
+        for (String fileName: changed) {
             if (!com.contains(fileName)) {
                 deleteFile(fileName);
             }
         }
+        Workers.map(written, fileName -> {
+            File file = Utils.join(_CWD, fileName);
+            if (file.isDirectory()) {
+                deleteTree(file);
+            }
+            checkoutFile(com, "--", fileName);
+            return null;
+        });
         _head = com;
         _addStage.clear();
         _rmStage.clear();
     }
 
+    /** Throws a GitletException if writing FILENAME over its working copy
+     * would lose a file _head does not track: a file at FILENAME, a file
+     * under FILENAME if it is a directory, or a file where a directory
+     * holding FILENAME is to go. Files _head tracks in those places are
+     * deleted by checkoutCommit first, as no commit tracks both a file
+     * and files under it. */
+    private void checkInTheWay(String fileName) {
+        File file = Utils.join(_CWD, fileName);
+        boolean inTheWay = file.isFile() && !_head.contains(fileName);
+        ArrayDeque<String> dirs = new ArrayDeque<>();
+        if (file.isDirectory()) {
+            dirs.push(fileName + Tree.SEPARATOR);
+        }
+        while (!inTheWay && !dirs.isEmpty()) {
+            String prefix = dirs.pop();
+            File[] under = Utils.join(_CWD, prefix).listFiles();
+            for (File f : (under == null) ? new File[0] : under) {
+                String path = prefix + f.getName();
+                if (f.isDirectory()) {
+                    dirs.push(path + Tree.SEPARATOR);
+                } else if (!_head.contains(path)) {
+                    inTheWay = true;
+                }
+            }
+        }
+        for (int k = fileName.indexOf(Tree.SEPARATOR); !inTheWay && k >= 0;
+             k = fileName.indexOf(Tree.SEPARATOR, k + 1)) {
+            String dir = fileName.substring(0, k);
+            inTheWay = Utils.join(_CWD, dir).isFile() && !_head.contains(dir);
+        }
+        if (inTheWay) {
+            throw new GitletException("There is an untracked file "
+                    + "in the way; delete it or add and commit it first.");
+        }
+    }
+
+    /** Deletes FILE and the directories under it, which hold no files. */
+    private static void deleteTree(File file) {
+        File[] under = file.listFiles();
+        if (under != null) {
+            for (File f : under) {
+                deleteTree(f);
+            }
+        }
+        file.delete();
+    }
+
     /** Creates a new branch with the given name, and points it at the
      * current head node. A branch is nothing more than a name for a
      * reference (a SHA-1 identifier) to a commit node. This command
@@ -417,7 +694,7 @@ public class Repository implements Serializable {
             throw new GitletException("A branch with that name already "
                     + "exists.");
         }
-        _branches.put(args[1], _head);
+        _branches.put(args[1], _head.getHashCode());
         saveCurrentState();
     }
 
@@ -461,10 +738,155 @@ public class Repository implements Serializable {
             throw new GitletException("No commit with that id exists.");
         }
         checkoutCommit(com);
-        _branches.put(_currBranch, com);
+        _branches.put(_currBranch, com.getHashCode());
         saveCurrentState();
     }
 
+    /** Packs every object into a single delta-compressed pack file,
+     * replacing loose objects and older packs, and deletes trees and blobs
+     * that no commit or staging area refers to. Versions of the same file
+     * are put next to each other so that they compress well as deltas.
+     *
+     * @param args Argument array from command line
+     */
+    public void gcCommand(String[] args) {
+        validateNumArgs(args, 1);
+        retreiveState();
+        List<String> commitIDs = allCommitIDs();
+        LinkedHashSet<String> treeIDs = new LinkedHashSet<>();
+        HashSet<String> seen = new HashSet<>();
+        TreeMap<String, Set<String>> versions = new TreeMap<>();
+        for (String id: commitIDs) {
+            Tree.collect(ObjectStore.readCommit(id).getTree(), "", treeIDs,
+                    seen, versions);
+        }
+        LinkedHashSet<String> blobIDs = new LinkedHashSet<>();
+        for (Set<String> ids: versions.values()) {
+            blobIDs.addAll(ids);
+        }
+        blobIDs.addAll(_addStage.values());
+        ObjectStore.repack(commitIDs, new ArrayList<>(treeIDs),
+                new ArrayList<>(blobIDs));
+        CommitIndex.rebuild();
+        MessageIndex.rebuild();
+        CommitGraph.write();
+        Bitmaps.write(new ArrayList<>(_branches.values()));
+    }
+
+    /** Prints the value of a repository setting, or sets it if a new
+     * value is given. Settings are described in Config.
+     *
+     * @param args Argument array from command line
+     */
+    public void configCommand(String[] args) {
+        if (args.length == 2) {
+            System.out.println(Config.get(args[1]));
+        } else {
+            validateNumArgs(args, 3);
+            Config.set(args[1], args[2]);
+        }
+    }
+
+    /** Prints the differences between two versions of the tracked files
+     * as unified diffs. With no operands, compares the staging area (the
+     * head commit with the staged changes made) to the working files; with
+     * --cached, compares the head commit to the staging area; and with two
+     * commit ids, compares the first commit to the second. Files are
+     * compared by blob id first, through the StatCache for working files
+     * and through Tree.diff for commits, so only those that changed are
+     * read, and each file's diff is written as soon as it is made.
+     *
+     * @param args Argument array from command line
+     */
+    public void diffCommand(String[] args) {
+        retreiveState();
+        BufferedOutputStream out = new BufferedOutputStream(System.out);
+        if (args.length == 1) {
+            diffWorking(out);
+            saveStats();
+        } else if (args.length == 2 && args[1].equals("--cached")) {
+            diffStaged(out);
+        } else if (args.length == 3) {
+            validateID(args[1]);
+            validateID(args[2]);
+            Commit from = findCommit(args[1]);
+            Commit to = findCommit(args[2]);
+            if (from == null || to == null) {
+                throw new GitletException("No commit with that id exists.");
+            }
+            List<String> changed = new ArrayList<>();
+            Tree.diff(from.getTree(), to.getTree(), "", changed);
+            Collections.sort(changed);
+            for (String fileName: changed) {
+                UnifiedDiff.write(out, fileName, contents(from, fileName),
+                        contents(to, fileName));
+            }
+        } else {
+            throw new GitletException("Incorrect operands.");
+        }
+        try {
+            out.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes to OUT the diffs from the staging area to the working files
+     * for the files it tracks that were changed or deleted. Working files
+     * are checked on the Workers pool, as for status. */
+    private void diffWorking(BufferedOutputStream out) {
+        List<String> files = new ArrayList<>();
+        Tree.diff(null, _head.getTree(), "", files);
+        files.removeAll(_rmStage.keySet());
+        for (String fileName: _addStage.keySet()) {
+            if (!_head.contains(fileName)) {
+                files.add(fileName);
+            }
+        }
+        Collections.sort(files);
+        List<Boolean> changed = Workers.map(files, fileName ->
+                !fileExists(fileName)
+                || !sameContents(stagedBlobID(fileName), fileName));
+        for (int i = 0; i < files.size(); i += 1) {
+            if (changed.get(i)) {
+                String fileName = files.get(i);
+                UnifiedDiff.write(out, fileName,
+                        ObjectStore.readBlob(stagedBlobID(fileName)),
+                        fileExists(fileName)
+                        ? Utils.readContents(Utils.join(_CWD, fileName))
+                        : null);
+            }
+        }
+    }
+
+    /** Writes to OUT the diffs from the head commit to the staging area
+     * for the files staged for addition or removal. */
+    private void diffStaged(BufferedOutputStream out) {
+        TreeSet<String> files = new TreeSet<>(_addStage.keySet());
+        files.addAll(_rmStage.keySet());
+        for (String fileName: files) {
+            String after = _rmStage.containsKey(fileName) ? null
+                    : _addStage.get(fileName);
+            if (after == null || !after.equals(_head.getBlobID(fileName))) {
+                UnifiedDiff.write(out, fileName, contents(_head, fileName),
+                        (after == null) ? null : ObjectStore.readBlob(after));
+            }
+        }
+    }
+
+    /** Returns the id of the blob of FILENAME in the staging area: the
+     * one staged for it, or else the one in the head commit. */
+    private String stagedBlobID(String fileName) {
+        String id = _addStage.get(fileName);
+        return (id != null) ? id : _head.getBlobID(fileName);
+    }
+
+    /** Returns the contents of FILENAME in COM, or null if COM does not
+     * track it. */
+    private static byte[] contents(Commit com, String fileName) {
+        return com.contains(fileName) ? com.getFileContents(fileName) : null;
+    }
+
     /** Merges files from the given branch into the current branch.
      * @param args Argument array from command line
      */
@@ -472,7 +894,7 @@ public class Repository implements Serializable {
         validateNumArgs(args, 2);
         retreiveState();
         String branchName = args[1];
-        Commit branchHead = _branches.get(branchName);
+        Commit branchHead = getBranchHead(branchName);
         if (_addStage.size() != 0 || _rmStage.size() != 0) {
             throw new GitletException("You have uncommitted changes.");
         } else if (branchHead == null) {
@@ -481,8 +903,8 @@ public class Repository implements Serializable {
         } else if (_currBranch.equals(branchName)) {
             throw new GitletException("Cannot merge a branch with itself.");
         }
-        Commit splitPoint = findSplitPoint(new HashSet<>(), _head,
-                branchHead, 0, new HashMap<>());
+        Commit splitPoint = ObjectStore.readCommit(
+                MergeBase.find(_head.getHashCode(), branchHead.getHashCode()));
         if (splitPoint.equals(branchHead)) {
             System.out.println("Given branch is an ancestor of the "
                     + "current branch.");
@@ -491,29 +913,30 @@ public class Repository implements Serializable {
             System.out.println("Current branch fast-forwarded.");
         } else {
             List<String> confFiles = compareMergeFiles(splitPoint, branchHead);
-            writeConflicts(confFiles, branchHead);
-            saveCurrentState();
-            commitCommand(new String[]{"commit", "Merged " + branchName
-                    + " into " + _currBranch + "."});
-            _head.setMergeParent(branchHead);
+            writeConflicts(confFiles, splitPoint, branchHead);
+            makeCommit("Merged " + branchName + " into " + _currBranch
+                    + ".", branchHead);
         }
         saveCurrentState();
     }
 
     /** Compares merge files based on SPLITPOINT and BRANCHHEAD,
      * adding and removing the necessary files. Returns the list
-     * of files with merge conflicts. */
+     * of files changed differently on both branches, whose lines must be
+     * merged. Only files changed since SPLITPOINT
+     * on either branch can need anything done, so those are the only ones
+     * looked at, found with Tree.diff. */
     private List<String> compareMergeFiles(Commit splitPoint,
                                            Commit branchHead) {
-        HashSet<String> allFiles = new HashSet<>();
-        allFiles.addAll(_head.getBlobs().keySet());
-        allFiles.addAll(branchHead.getBlobs().keySet());
-        allFiles.addAll(splitPoint.getBlobs().keySet());
+        List<String> changed = new ArrayList<>();
+        Tree.diff(splitPoint.getTree(), _head.getTree(), "", changed);
+        Tree.diff(splitPoint.getTree(), branchHead.getTree(), "", changed);
+        HashSet<String> allFiles = new HashSet<>(changed);
         List<String> conflictedFiles = new ArrayList<>();
         for (String fileName: allFiles) {
             if (!_head.contains(fileName) && fileExists(fileName)
                     && branchHead.contains(fileName)
-                    && !sameContents(branchHead.getBlobFromFile(fileName),
+                    && !sameContents(branchHead.getBlobID(fileName),
                         fileName)) {
                 throw new GitletException("There is an untracked file "
                         + "in the way; delete it, or add and commit it first.");
@@ -526,7 +949,7 @@ public class Repository implements Serializable {
                         && branchHead.contains(fileName))) {
                 checkoutFileWithCommitID(branchHead.getHashCode(),
                         "--", fileName);
-                _addStage.put(fileName, branchHead.getBlobFromFile(fileName));
+                _addStage.put(fileName, branchHead.getBlobID(fileName));
                 saveCurrentState();
             } else if (!branchHead.contains(fileName)
                     && splitPoint.contains(fileName)
@@ -556,77 +979,34 @@ public class Repository implements Serializable {
         return conflictedFiles;
     }
 
-    /** Write contents of the CONFLICTEDFILES based on contents in
-     * BRANCHHEAD and _head. */
+    /** Merges the lines of each of CONFLICTEDFILES, which changed since
+     * SPLITPOINT both in BRANCHHEAD and in _head, with Diff3, and stages
+     * the result. Changes to different lines of a file merge cleanly; only
+     * the lines both sides changed differently are put between conflict
+     * markers. A file missing from a commit is taken to be empty. */
     private void writeConflicts(List<String> conflictedFiles,
-                                Commit branchHead) {
-        if (conflictedFiles.size() > 0) {
-            for (String fileName: conflictedFiles) {
-                String currContent = ""; String givenContent = "";
-                if (_head.contains(fileName)) {
-                    currContent = _head.getFileContents(fileName);
-                }
-                if (branchHead.contains(fileName)) {
-                    givenContent = branchHead.getFileContents(fileName);
-                }
-                String content = "<<<<<<< HEAD\n" + currContent
-                        + "=======\n" + givenContent + ">>>>>>>\n";
-                File file = Utils.join(_CWD, fileName);
-                Utils.writeContents(file, content);
-                _addStage.put(fileName, new Blob(content));
+                                Commit splitPoint, Commit branchHead) {
+        for (String fileName: conflictedFiles) {
+            ByteArrayOutputStream merged = new ByteArrayOutputStream();
+            boolean clean = Diff3.merge(lines(splitPoint, fileName),
+                    lines(_head, fileName), lines(branchHead, fileName),
+                    merged);
+            File file = Utils.join(_CWD, fileName);
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, merged.toByteArray());
+            _addStage.put(fileName, ObjectStore.writeBlob(file));
+            if (!clean) {
                 System.out.println("Encountered a merge conflict.");
             }
         }
     }
 
-    /** Returns commit that is split point of two branches starting
-     * with CURR and GIVEN. SEEN keeps track of seen commits. DIST is
-     * number of commits away from _head and POSSSPLITS keeps track of
-     * possible split points. */
-    private Commit findSplitPoint(HashSet<String> seen, Commit curr,
-                                  Commit given, int dist,
-                                  HashMap<Integer, String> possSplits) {
-        if (curr == null && given == null) {
-            return null;
-        }
-        if (possSplits.size() > 0
-                && dist > Collections.min(possSplits.keySet())) {
-            return null;
-        }
-        if (curr != null) {
-            if (seen.contains(curr.getHashCode())) {
-                possSplits.clear();
-                possSplits.put(dist, curr.getHashCode());
-                return curr;
-            }
-            dist += 1;
-            seen.add(curr.getHashCode());
-        }
-        if (given != null) {
-            if (seen.contains(given.getHashCode())) {
-                possSplits.clear();
-                possSplits.put(dist, given.getHashCode());
-                return given;
-            }
-            seen.add(given.getHashCode());
-        }
-        Commit parent = ((curr == null) ? null : curr.getParent());
-        Commit gParent = ((given == null) ? null : given.getParent());
-        Commit mergeParent = ((curr == null) ? null : curr.getMergeParent());
-        Commit gMergeParent = ((given == null) ? null : given.getMergeParent());
-
-        findSplitPoint(seen, parent, gParent, dist, possSplits);
-        if (mergeParent != null) {
-            findSplitPoint(seen, mergeParent, gParent, dist, possSplits);
-        }
-        if (gMergeParent != null) {
-            findSplitPoint(seen, parent, gMergeParent, dist, possSplits);
-        }
-        if (mergeParent != null && gMergeParent != null) {
-            findSplitPoint(seen, mergeParent, gMergeParent, dist, possSplits);
-        }
-        String hashcode = possSplits.get(Collections.min(possSplits.keySet()));
-        return _commits.get(hashcode);
+    /** Returns the lines of FILENAME in COM, or none if COM does not
+     * track it. */
+    private static LineDiff.Lines lines(Commit com, String fileName) {
+        byte[] contents = contents(com, fileName);
+        return new LineDiff.Lines((contents == null) ? new byte[0]
+                : contents);
     }
 
     /**
@@ -649,20 +1029,87 @@ public class Repository implements Serializable {
         }
     }
 
-    /** Returns commit with COMMITID. */
+    /** Returns commit with COMMITID, or null if there is none. A full id
+     * is looked up directly in the object store; an abbreviated one is
+     * resolved through the CommitIndex, and must not match more than one
+     * commit. An id that is not hexadecimal matches no commit. */
     private Commit findCommit(String commitID) {
-        for (String hash: _commits.keySet()) {
-            if (hash.substring(0, commitID.length()).equals(commitID)) {
-                return _commits.get(hash);
+        if (!ObjectStore.isHex(commitID)) {
+            return null;
+        } else if (commitID.length() == Utils.UID_LENGTH) {
+            if (!ObjectStore.contains(commitID)) {
+                return null;
+            }
+            try {
+                return ObjectStore.readCommit(commitID);
+            } catch (IllegalArgumentException e) {
+                return null;
             }
         }
-        return null;
+        List<String> matches = CommitIndex.resolve(commitID);
+        if (matches.size() > 1) {
+            throw new GitletException("Ambiguous commit id.");
+        }
+        return matches.isEmpty() ? null
+                : ObjectStore.readCommit(matches.get(0));
+    }
+
+    /** Returns the IDs of all commits ever made, oldest first. */
+    private List<String> allCommitIDs() {
+        return CommitIndex.all();
+    }
+
+    /** Writes COM to the object store and records it in the
+     * CommitIndex and MessageIndex. */
+    private void storeCommit(Commit com) {
+        ObjectStore.writeCommit(com);
+        CommitIndex.add(com.getHashCode());
+        MessageIndex.add(com.getHashCode(), com.getMsg());
+    }
+
+    /** Returns the head commit of BRANCHNAME, or null if there is no
+     * such branch. */
+    private Commit getBranchHead(String branchName) {
+        String id = _branches.get(branchName);
+        return (id == null) ? null : ObjectStore.readCommit(id);
     }
 
-    /** Deletes FILENAME from _CWD. */
+    /** Deletes FILENAME from _CWD, along with the directories holding it
+     * that it leaves empty. */
     private void deleteFile(String fileName) {
         File file = Utils.join(_CWD, fileName);
-        Utils.restrictedDelete(file);
+        if (!file.isDirectory()) {
+            file.delete();
+        }
+        File dir = file.getParentFile();
+        while (!dir.equals(_CWD) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** Returns the paths of all files in _CWD and the directories under
+     * it, other than .gitlet, in sorted order. */
+    private List<String> workingFiles() {
+        List<String> result = new ArrayList<>();
+        ArrayDeque<String> dirs = new ArrayDeque<>();
+        dirs.push("");
+        while (!dirs.isEmpty()) {
+            String prefix = dirs.pop();
+            File[] files = Utils.join(_CWD, prefix).listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                String path = prefix + file.getName();
+                if (file.isFile()) {
+                    result.add(path);
+                } else if (file.isDirectory() && !path.equals(".gitlet")) {
+                    dirs.push(path + Tree.SEPARATOR);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
     }
 
     /** Returns true if FILENAME exist in _CWD. */
@@ -670,12 +1117,6 @@ public class Repository implements Serializable {
         return Utils.join(_CWD, fileName).exists();
     }
 
-    /** Returns content of FILENAME. */
-    private String getFileContent(String fileName) {
-        File file = Utils.join(_CWD, fileName);
-        return Utils.readContentsAsString(file);
-    }
-
     /** Returns true if FILENAME is tracked by all commits in COMS. */
     private boolean containedIn(Commit[] coms, String fileName) {
         for (Commit com: coms) {
@@ -686,58 +1127,191 @@ public class Repository implements Serializable {
         return true;
     }
 
-    /** Returns true FILENAME is different in COM1 and COM2. */
+    /** Returns true FILENAME is different in COM1 and COM2. Blobs are
+     * named by their contents, so this only compares their ids. */
     private boolean diffContent(Commit com1, Commit com2, String fileName) {
-        return !com1.getFileContents(fileName).equals(
-                com2.getFileContents(fileName));
+        return !com1.getBlobID(fileName).equals(com2.getBlobID(fileName));
     }
 
-    /** Returns true if contents of BLOB equal contents of FILENAME. */
-    private boolean sameContents(Blob blob, String fileName) {
-        if (!Utils.join(_CWD, fileName).exists()) {
-            return false;
-        }
-        String content = getFileContent(fileName);
-        return blob.getContents().equals(content);
+    /** Returns true if contents of the blob with BLOBID equal contents
+     * of FILENAME. FILENAME is only read if the StatCache cannot vouch
+     * for it. */
+    private boolean sameContents(String blobID, String fileName) {
+        return blobID.equals(_stats.idOf(fileName,
+                Utils.join(_CWD, fileName)));
     }
 
-    /** Gets current state of repo. */
-    @SuppressWarnings("unchecked")
+    /** Gets current state of repo, unless this Repository already holds
+     * it and none of the files it is kept in have changed since, as when
+     * a Daemon runs one command after another. */
     private void retreiveState() {
-        _head = Utils.readObject(_HEAD, Commit.class);
+        if (_unsaved) {
+            return;
+        }
+        List<Long> stamp = stateStamp();
+        if (stamp.equals(_loaded)) {
+            return;
+        }
+        _head = ObjectStore.readCommit(Utils.readContentsAsString(_HEAD));
         _currBranch = Utils.readContentsAsString(_CURRBRANCH);
-        _addStage = Utils.readObject(_ADDSTAGE, HashMap.class);
-        _rmStage = Utils.readObject(_RMSTAGE, HashMap.class);
-        _branches = Utils.readObject(_BRANCHES, HashMap.class);
-        _commits = Utils.readObject(_COMMITS, HashMap.class);
+        _addStage = new UndoableMap(Codec.readIDs(_ADDSTAGE, Codec.STAGE));
+        _rmStage = new UndoableMap(Codec.readIDs(_RMSTAGE, Codec.STAGE));
+        _branches = new UndoableMap(Codec.readIDs(_BRANCHES, Codec.REFS));
+        _stats = StatCache.load();
+        _loaded = stamp;
+    }
+
+    /** Makes saveCurrentState keep the state of the repo in memory until
+     * the next checkpoint, so that a Batch of commands writes it once. */
+    void deferSaves() {
+        _deferSaves = true;
+    }
+
+    /** Writes the state of the repo if it has changed since it was last
+     * written. */
+    void checkpoint() {
+        if (_unsaved) {
+            _unsaved = false;
+            writeState();
+        }
+    }
+
+    /** The in-memory state of a repo at some point of a Batch, to be put
+     * back if a command run after it fails part way, as a failed command
+     * run on its own leaves the saved state alone. The staging areas and
+     * branches are not copied: they are UndoableMaps, marked when the
+     * snapshot is taken, so a snapshot costs nothing however many files
+     * are staged. */
+    static class Snapshot {
+        /** A snapshot of the state of REPO. */
+        Snapshot(Repository repo) {
+            _addStage = repo._addStage;
+            _rmStage = repo._rmStage;
+            _branches = repo._branches;
+            _currBranch = repo._currBranch;
+            _head = repo._head;
+            _loaded = repo._loaded;
+            _unsaved = repo._unsaved;
+            for (UndoableMap map : List.of(_addStage, _rmStage, _branches)) {
+                map.mark();
+            }
+        }
+
+        /** Staging area for addition. */
+        private final UndoableMap _addStage;
+
+        /** Staging area for removal. */
+        private final UndoableMap _rmStage;
+
+        /** Branch heads. */
+        private final UndoableMap _branches;
+
+        /** Current branch name. */
+        private final String _currBranch;
+
+        /** Head commit. */
+        private final Commit _head;
+
+        /** Stamp of the state files when the state was loaded. */
+        private final List<Long> _loaded;
+
+        /** True if the state had changed since it was last written. */
+        private final boolean _unsaved;
+    }
+
+    /** Returns a snapshot of the in-memory state of this repo, which
+     * stays valid until the next one is taken. */
+    Snapshot snapshot() {
+        return new Snapshot(this);
     }
 
-    /** Saves current state of repo. */
+    /** Puts back the in-memory state recorded in SNAPSHOT, undoing any
+     * changes made to it since, saved or not. */
+    void restore(Snapshot snapshot) {
+        _addStage = snapshot._addStage;
+        _rmStage = snapshot._rmStage;
+        _branches = snapshot._branches;
+        for (UndoableMap map : List.of(_addStage, _rmStage, _branches)) {
+            map.undo();
+        }
+        _currBranch = snapshot._currBranch;
+        _head = snapshot._head;
+        _loaded = snapshot._loaded;
+        _unsaved = snapshot._unsaved;
+    }
+
+    /** Saves current state of repo, or only notes that it has changed if
+     * saves are deferred. */
     private void saveCurrentState() {
-        Utils.writeObject(_ADDSTAGE, _addStage);
-        Utils.writeObject(_RMSTAGE, _rmStage);
-        Utils.writeObject(_BRANCHES, _branches);
-        Utils.writeObject(_COMMITS, _commits);
-        Utils.writeObject(_HEAD, _head);
+        if (_deferSaves) {
+            _unsaved = true;
+        } else {
+            writeState();
+        }
+    }
+
+    /** Saves the StatCache, when it is the only state that has changed. */
+    private void saveStats() {
+        if (_deferSaves) {
+            _unsaved = true;
+        } else {
+            _stats.save();
+            _loaded = stateStamp();
+        }
+    }
+
+    /** Writes current state of repo. Commits and blobs are already in the
+     * object store, so only the small mutable state is rewritten. */
+    private void writeState() {
+        Codec.writeIDs(_ADDSTAGE, Codec.STAGE, _addStage);
+        Codec.writeIDs(_RMSTAGE, Codec.STAGE, _rmStage);
+        Codec.writeIDs(_BRANCHES, Codec.REFS, _branches);
+        Utils.writeContents(_HEAD, _head.getHashCode());
         Utils.writeContents(_CURRBRANCH, _currBranch);
+        if (_stats != null) {
+            _stats.save();
+        }
+        _loaded = stateStamp();
     }
 
+    /** Returns the modification times and lengths of the files holding
+     * the state of the repo, which change whenever the state is saved. */
+    private List<Long> stateStamp() {
+        List<Long> result = new ArrayList<>();
+        for (File file : new File[] {_HEAD, _CURRBRANCH, _ADDSTAGE,
+                                     _RMSTAGE, _BRANCHES, StatCache.INDEX}) {
+            result.add(file.lastModified());
+            result.add(file.length());
+        }
+        return result;
+    }
 
-    /** Staging area for addition. */
-    private HashMap<String, Blob> _addStage;
 
-    /** Staging area for removal. */
-    private HashMap<String, Blob> _rmStage;
+    /** Staging area for addition, mapping file names to blob ids. */
+    private UndoableMap _addStage;
 
-    /** Maps branch names to their head commit. */
-    private HashMap<String, Commit> _branches;
+    /** Staging area for removal, mapping file names to blob ids. */
+    private UndoableMap _rmStage;
 
-    /** Maps commit ids to their commit. */
-    private HashMap<String, Commit> _commits;
+    /** Maps branch names to the id of their head commit. */
+    private UndoableMap _branches;
 
     /** Curent branch name. */
     private String _currBranch;
 
     /** Head commit. */
     private Commit _head;
+
+    /** Sizes, modification times and blob ids of working files. */
+    private StatCache _stats;
+
+    /** Stamp of the state files when the state was last loaded or saved,
+     * or null if it has not been. */
+    private List<Long> _loaded;
+
+    /** True if saves are deferred until the next checkpoint. */
+    private boolean _deferSaves;
+
+    /** True if the state has changed since it was last written. */
+    private boolean _unsaved;
 }
@@ -0,0 +1,175 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Remembers the size, modification time and blob id of working files,
+ *  so that a file whose size and modification time have not changed since
+ *  it was last hashed is not read again. An entry is only recorded once
+ *  the file's modification time is at least RACY_WINDOW milliseconds in
+ *  the past: a file changed again within the same tick of a coarse
+ *  filesystem clock would otherwise keep its recorded time and size, and
+ *  the change would go unnoticed. Such files are simply hashed every time
+ *  until they have aged. The cache lives in .gitlet/index.
+ *  @author Edan Bash
+ */
+class StatCache {
+
+    /** File holding the cache. */
+    static final File INDEX = Utils.join(Main.CWD, ".gitlet", "index");
+
+    /** Magic bytes of the saved cache. */
+    private static final byte[] MAGIC = {'G', 'S', 'T', 'C'};
+
+    /** Version of the saved cache. */
+    private static final int VERSION = 1;
+
+    /** Smallest age, in milliseconds, of a modification time that is
+     *  trusted to change whenever the file does. */
+    static final long RACY_WINDOW = 2000;
+
+    /** What is known about one working file. */
+    private static class Entry {
+        /** An entry for a file of SIZE bytes last modified at MTIME,
+         *  holding the blob ID. */
+        Entry(long size, long mtime, String id) {
+            _size = size;
+            _mtime = mtime;
+            _id = id;
+        }
+
+        /** Size of the file in bytes. */
+        private final long _size;
+        /** Modification time of the file in milliseconds. */
+        private final long _mtime;
+        /** Id of the blob holding the file's contents. */
+        private final String _id;
+    }
+
+    /** An empty cache. */
+    private StatCache() {
+        _entries = new HashMap<>();
+    }
+
+    /** Returns the cache saved in INDEX, or an empty one if there is
+     *  none. */
+    static StatCache load() {
+        if (INDEX.isFile()) {
+            try {
+                byte[] data = Utils.readContents(INDEX);
+                Codec.Reader in = new Codec.Reader(data, MAGIC, VERSION);
+                StatCache result = new StatCache();
+                int size = (int) in.readVarint();
+                for (int i = 0; i < size; i += 1) {
+                    String name = in.readString();
+                    long length = in.readVarint();
+                    long mtime = in.readVarint();
+                    result._entries.put(name,
+                            new Entry(length, mtime, in.readID()));
+                }
+                return result;
+            } catch (IllegalArgumentException
+                     | IndexOutOfBoundsException excp) {
+                /* An unreadable cache is only a cache; start afresh. */
+                INDEX.delete();
+            }
+        }
+        return new StatCache();
+    }
+
+    /** Writes the cache to INDEX if it has changed since it was loaded,
+     *  as the Codec record "GSTC" holding the number of entries and then,
+     *  for each, the file's name, size, modification time and blob id. */
+    synchronized void save() {
+        if (_dirty) {
+            Codec.Writer out = new Codec.Writer(MAGIC, VERSION);
+            out.writeVarint(_entries.size());
+            for (Map.Entry<String, Entry> elem : _entries.entrySet()) {
+                Entry entry = elem.getValue();
+                out.writeString(elem.getKey());
+                out.writeVarint(entry._size);
+                out.writeVarint(entry._mtime);
+                out.writeID(entry._id);
+            }
+            Utils.writeContents(INDEX, out.toByteArray());
+            _dirty = false;
+        }
+    }
+
+    /** Returns the id of the blob that the working file FILE, known as
+     *  NAME, would have, or null if it does not exist. The file is only
+     *  read if it is not in the cache or its size or modification time
+     *  has changed. May be called from several threads at once; files
+     *  are hashed outside the lock. */
+    String idOf(String name, File file) {
+        BasicFileAttributes attrs = stat(file);
+        if (attrs == null) {
+            forget(name);
+            return null;
+        }
+        long mtime = attrs.lastModifiedTime().toMillis();
+        synchronized (this) {
+            Entry entry = _entries.get(name);
+            if (entry != null && entry._size == attrs.size()
+                && entry._mtime == mtime) {
+                return entry._id;
+            }
+        }
+        String id = Blob.idOf(file);
+        record(name, attrs, id);
+        return id;
+    }
+
+    /** Records that the working file FILE, known as NAME, holds the blob
+     *  ID, for instance just after it was stored or checked out. */
+    void record(String name, File file, String id) {
+        BasicFileAttributes attrs = stat(file);
+        if (attrs != null) {
+            record(name, attrs, id);
+        }
+    }
+
+    /** Removes any entry for NAME. */
+    private synchronized void forget(String name) {
+        if (_entries.remove(name) != null) {
+            _dirty = true;
+        }
+    }
+
+    /** Records that the file NAME with attributes ATTRS holds the blob ID,
+     *  unless its modification time is too recent to be trusted. */
+    private synchronized void record(String name, BasicFileAttributes attrs,
+                                     String id) {
+        long mtime = attrs.lastModifiedTime().toMillis();
+        if (mtime + RACY_WINDOW > System.currentTimeMillis()) {
+            if (_entries.remove(name) != null) {
+                _dirty = true;
+            }
+            return;
+        }
+        _entries.put(name, new Entry(attrs.size(), mtime, id));
+        _dirty = true;
+    }
+
+    /** Returns the attributes of FILE, or null if it is not a plain
+     *  file. */
+    private static BasicFileAttributes stat(File file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file.toPath(),
+                    BasicFileAttributes.class);
+            return attrs.isRegularFile() ? attrs : null;
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Maps names of working files to what is known about them. */
+    private HashMap<String, Entry> _entries;
+
+    /** True if the cache has changed since it was loaded. */
+    private boolean _dirty;
+}
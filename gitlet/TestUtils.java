@@ -0,0 +1,97 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Helpers for tests that run Gitlet on a repo. Gitlet works in the
+ *  directory it is started in, so such tests make a temporary directory
+ *  and run Gitlet there in a separate process.
+ *  @author Edan Bash
+ */
+class TestUtils {
+
+    /** Starts the line of log giving the id of a commit. */
+    private static final String COMMIT = "commit ";
+
+    /** A test run in a directory. */
+    interface DirTest {
+        /** Runs the test in DIR. */
+        void run(File dir) throws IOException;
+    }
+
+    /** Runs TEST in a new temporary directory, which is deleted with all
+     *  it holds afterwards. */
+    static void inTempDir(DirTest test) throws IOException {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        try {
+            test.run(dir);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Returns the output of running Gitlet with ARGS in DIR. */
+    static String run(File dir, String... args) throws IOException {
+        return run(dir, Main.class, args);
+    }
+
+    /** Returns the output of running the main method of MAIN with ARGS in
+     *  DIR. */
+    static String run(File dir, Class<?> main, String... args)
+        throws IOException {
+        String[] command = new String[args.length + 4];
+        command[0] = System.getProperty("java.home") + "/bin/java";
+        command[1] = "-cp";
+        command[2] = System.getProperty("java.class.path");
+        command[3] = main.getName();
+        System.arraycopy(args, 0, command, 4, args.length);
+        Process process = new ProcessBuilder(command).directory(dir)
+            .redirectErrorStream(true).start();
+        try (InputStream in = process.getInputStream()) {
+            String output = new String(in.readAllBytes(),
+                                       StandardCharsets.UTF_8);
+            process.waitFor();
+            return output;
+        } catch (InterruptedException excp) {
+            throw new IOException(excp);
+        }
+    }
+
+    /** Returns the ids of the commits that log prints in DIR, newest
+     *  first. */
+    static List<String> log(File dir) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (String line : run(dir, "log").split("\n")) {
+            if (line.startsWith(COMMIT)) {
+                result.add(line.substring(COMMIT.length()));
+            }
+        }
+        return result;
+    }
+
+    /** Writes CONTENTS to the file NAME in DIR. */
+    static void write(File dir, String name, String contents) {
+        Utils.writeContents(new File(dir, name), contents);
+    }
+
+    /** Returns the contents of the file NAME in DIR. */
+    static String read(File dir, String name) {
+        return Utils.readContentsAsString(new File(dir, name));
+    }
+
+    /** Deletes FILE and, if it is a directory, all it holds. */
+    static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,487 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** A directory as it is in some commit: the names of the files in it,
+ *  each with the id of its blob, and the names of its subdirectories, each
+ *  with the id of its own Tree. A Tree is named by the SHA-1 of its
+ *  canonical encoding, so two directories with the same contents, down to
+ *  the last file, have the same id, and comparing two commits can skip
+ *  any subdirectory whose ids are equal. Making a commit only writes new
+ *  Trees for the directories on the paths of the files that changed.
+ *
+ *  A directory with more than MAX_ENTRIES entries is split, like a hash
+ *  array mapped trie, into a fanout node holding up to FANOUT child nodes,
+ *  which divide its entries between them by BUCKET_BITS bits of the hash
+ *  of their names, and are split again in turn if they are still too
+ *  large. So a change to one file of a large directory only writes the
+ *  small nodes on the path to its entry, and everything else is shared
+ *  with the parent commit. Whether a node is split depends only on the
+ *  entries under it, so equal directories still have equal ids.
+ *
+ *  Paths of files within a commit are relative to the working directory,
+ *  with SEPARATOR between their parts. Directories holding no files are
+ *  not kept. Trees are stored in the ObjectStore as the Codec record
+ *  "GTRE": the number of files followed by each file's name and blob id,
+ *  and then the same for subdirectories, all sorted by name. Fanout nodes
+ *  are the record "GTFN": their level, the number of entries under them,
+ *  and the number of children followed by each child's bucket and id.
+ *  @author Edan Bash
+ */
+class Tree {
+
+    /** Separates the parts of a path. */
+    static final char SEPARATOR = '/';
+
+    /** Largest number of entries a node holds itself. */
+    static final int MAX_ENTRIES = 128;
+
+    /** Number of bits of the hash of a name that choose its child in a
+     *  fanout node. */
+    private static final int BUCKET_BITS = 5;
+
+    /** Largest number of children of a fanout node. */
+    private static final int FANOUT = 1 << BUCKET_BITS;
+
+    /** Level of the deepest nodes, which are never split, as the hash
+     *  has no bits left for them. */
+    private static final int MAX_LEVEL = Integer.SIZE / BUCKET_BITS;
+
+    /** Seed of the hash of names. */
+    private static final int SEED = 0x3c6ef372;
+
+    /** Magic bytes of the binary form of a tree. */
+    private static final byte[] MAGIC = {'G', 'T', 'R', 'E'};
+
+    /** Magic bytes of the binary form of a fanout node. */
+    private static final byte[] FANOUT_MAGIC = {'G', 'T', 'F', 'N'};
+
+    /** Version of the binary forms of trees. */
+    private static final int VERSION = 1;
+
+    /** A node listing FILES and DIRS, mapping names to ids. */
+    private Tree(TreeMap<String, String> files, TreeMap<String, String> dirs) {
+        _files = files;
+        _dirs = dirs;
+        _level = 0;
+        _count = files.size() + dirs.size();
+        _children = null;
+    }
+
+    /** A fanout node at LEVEL with COUNT entries under it, divided between
+     *  CHILDREN, mapping buckets to ids. */
+    private Tree(int level, int count, TreeMap<Integer, String> children) {
+        _files = null;
+        _dirs = null;
+        _level = level;
+        _count = count;
+        _children = children;
+    }
+
+    /** Returns the tree stored as DATA. */
+    static Tree fromBinary(byte[] data) {
+        if (data.length >= FANOUT_MAGIC.length
+            && Arrays.equals(data, 0, FANOUT_MAGIC.length, FANOUT_MAGIC, 0,
+                             FANOUT_MAGIC.length)) {
+            Codec.Reader in = new Codec.Reader(data, FANOUT_MAGIC, VERSION);
+            int level = (int) in.readVarint();
+            int count = (int) in.readVarint();
+            int size = (int) in.readVarint();
+            TreeMap<Integer, String> children = new TreeMap<>();
+            for (int i = 0; i < size; i += 1) {
+                int bucket = (int) in.readVarint();
+                children.put(bucket, in.readID());
+            }
+            return new Tree(level, count, children);
+        }
+        Codec.Reader in = new Codec.Reader(data, MAGIC, VERSION);
+        TreeMap<String, String> files = readEntries(in);
+        return new Tree(files, readEntries(in));
+    }
+
+    /** Returns a map of names to ids read from IN. */
+    private static TreeMap<String, String> readEntries(Codec.Reader in) {
+        TreeMap<String, String> result = new TreeMap<>();
+        int size = (int) in.readVarint();
+        for (int i = 0; i < size; i += 1) {
+            String name = in.readString();
+            result.put(name, in.readID());
+        }
+        return result;
+    }
+
+    /** Returns the binary form in which this tree is stored. */
+    byte[] toBinary() {
+        if (isFanout()) {
+            Codec.Writer out = new Codec.Writer(FANOUT_MAGIC, VERSION);
+            out.writeVarint(_level);
+            out.writeVarint(_count);
+            out.writeVarint(_children.size());
+            for (Map.Entry<Integer, String> child : _children.entrySet()) {
+                out.writeVarint(child.getKey());
+                out.writeID(child.getValue());
+            }
+            return out.toByteArray();
+        }
+        Codec.Writer out = new Codec.Writer(MAGIC, VERSION);
+        for (TreeMap<String, String> entries : List.of(_files, _dirs)) {
+            out.writeVarint(entries.size());
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeID(entry.getValue());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Returns the canonical encoding of this tree, from which its id is
+     *  computed: a line reading "tree", then a line for each file giving
+     *  its blob id and name, and one for each subdirectory giving its tree
+     *  id and name, each sorted by name. A fanout node has a line giving
+     *  its level and number of entries instead, and then one for each
+     *  child giving its bucket and id. */
+    byte[] encode() {
+        StringBuilder result = new StringBuilder();
+        if (isFanout()) {
+            result.append("fanout ").append(_level).append(' ')
+                .append(_count).append('\n');
+            for (Map.Entry<Integer, String> child : _children.entrySet()) {
+                result.append("node ").append(child.getKey()).append(' ')
+                    .append(child.getValue()).append('\n');
+            }
+        } else {
+            result.append("tree\n");
+            for (Map.Entry<String, String> entry : _files.entrySet()) {
+                result.append("blob ").append(entry.getValue()).append(' ')
+                    .append(entry.getKey()).append('\n');
+            }
+            for (Map.Entry<String, String> entry : _dirs.entrySet()) {
+                result.append("tree ").append(entry.getValue()).append(' ')
+                    .append(entry.getKey()).append('\n');
+            }
+        }
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the id of the tree that results from putting the files
+     *  ADDS, mapping paths to blob ids, into the tree ID, or into an empty
+     *  tree if ID is null, and taking the files REMOVES out of it. Only the
+     *  nodes holding the entries of ADDS and REMOVES are rewritten; the
+     *  rest are shared with ID. */
+    static String update(String id, Map<String, String> adds,
+                         Collection<String> removes) {
+        HashMap<String, String> files = new HashMap<>();
+        HashMap<String, String> dirs = new HashMap<>();
+        HashMap<String, HashMap<String, String>> subAdds = new HashMap<>();
+        HashMap<String, Set<String>> subRemoves = new HashMap<>();
+        for (Map.Entry<String, String> entry : adds.entrySet()) {
+            String path = entry.getKey();
+            int k = path.indexOf(SEPARATOR);
+            if (k < 0) {
+                files.put(path, entry.getValue());
+                dirs.put(path, null);
+            } else {
+                subAdds.computeIfAbsent(path.substring(0, k),
+                        x -> new HashMap<>())
+                    .put(path.substring(k + 1), entry.getValue());
+            }
+        }
+        for (String path : removes) {
+            int k = path.indexOf(SEPARATOR);
+            if (k < 0) {
+                files.put(path, null);
+            } else {
+                subRemoves.computeIfAbsent(path.substring(0, k),
+                        x -> new HashSet<>()).add(path.substring(k + 1));
+            }
+        }
+        Set<String> changedDirs = new HashSet<>(subAdds.keySet());
+        changedDirs.addAll(subRemoves.keySet());
+        for (String name : changedDirs) {
+            String dir = (id == null) ? null : find(id, name, true);
+            if (dir == null && !subAdds.containsKey(name)) {
+                continue;
+            }
+            String sub = update(dir,
+                    subAdds.getOrDefault(name, new HashMap<>()),
+                    subRemoves.getOrDefault(name, new HashSet<>()));
+            dirs.put(name, (ObjectStore.readTree(sub)._count == 0) ? null
+                     : sub);
+            if (subAdds.containsKey(name)) {
+                files.put(name, null);
+            }
+        }
+        return apply(id, 0, files, dirs);
+    }
+
+    /** Returns the id of the node at LEVEL that results from changing the
+     *  node ID, or an empty node if ID is null, by setting the blob ids of
+     *  FILES and the tree ids of DIRS, removing the names mapped to null.
+     *  Only the children of fanout nodes with changed entries are
+     *  rewritten. */
+    private static String apply(String id, int level,
+                                Map<String, String> files,
+                                Map<String, String> dirs) {
+        Tree node = (id == null) ? null : ObjectStore.readTree(id);
+        if (node == null || !node.isFanout()) {
+            TreeMap<String, String> newFiles = (node == null)
+                ? new TreeMap<>() : new TreeMap<>(node._files);
+            TreeMap<String, String> newDirs = (node == null)
+                ? new TreeMap<>() : new TreeMap<>(node._dirs);
+            put(newFiles, files);
+            put(newDirs, dirs);
+            return build(newFiles, newDirs, level);
+        }
+        HashMap<Integer, Map<String, String>> childFiles = new HashMap<>();
+        HashMap<Integer, Map<String, String>> childDirs = new HashMap<>();
+        split(files, level, childFiles);
+        split(dirs, level, childDirs);
+        Set<Integer> buckets = new HashSet<>(childFiles.keySet());
+        buckets.addAll(childDirs.keySet());
+        TreeMap<Integer, String> children = new TreeMap<>(node._children);
+        for (int bucket : buckets) {
+            String child = apply(children.get(bucket), level + 1,
+                    childFiles.getOrDefault(bucket, new HashMap<>()),
+                    childDirs.getOrDefault(bucket, new HashMap<>()));
+            if (ObjectStore.readTree(child)._count == 0) {
+                children.remove(bucket);
+            } else {
+                children.put(bucket, child);
+            }
+        }
+        int count = 0;
+        for (String child : children.values()) {
+            count += ObjectStore.readTree(child)._count;
+        }
+        if (count <= MAX_ENTRIES) {
+            TreeMap<String, String> allFiles = new TreeMap<>();
+            TreeMap<String, String> allDirs = new TreeMap<>();
+            for (String child : children.values()) {
+                entries(child, allFiles, allDirs);
+            }
+            return build(allFiles, allDirs, level);
+        }
+        return new Tree(level, count, children).write();
+    }
+
+    /** Puts CHANGES into ENTRIES, removing the names mapped to null. */
+    private static void put(TreeMap<String, String> entries,
+                            Map<String, String> changes) {
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                entries.remove(change.getKey());
+            } else {
+                entries.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    /** Adds each entry of ENTRIES to the map in INTO for its bucket at
+     *  LEVEL. */
+    private static void split(Map<String, String> entries, int level,
+                              Map<Integer, Map<String, String>> into) {
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            into.computeIfAbsent(bucket(entry.getKey(), level),
+                    x -> new TreeMap<>())
+                .put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** Stores the node at LEVEL holding FILES and DIRS, splitting it if it
+     *  is too large, and returns its id. */
+    private static String build(TreeMap<String, String> files,
+                                TreeMap<String, String> dirs, int level) {
+        int count = files.size() + dirs.size();
+        if (count <= MAX_ENTRIES || level == MAX_LEVEL) {
+            return new Tree(files, dirs).write();
+        }
+        HashMap<Integer, Map<String, String>> childFiles = new HashMap<>();
+        HashMap<Integer, Map<String, String>> childDirs = new HashMap<>();
+        split(files, level, childFiles);
+        split(dirs, level, childDirs);
+        TreeMap<Integer, String> children = new TreeMap<>();
+        for (int bucket = 0; bucket < FANOUT; bucket += 1) {
+            if (childFiles.containsKey(bucket)
+                || childDirs.containsKey(bucket)) {
+                children.put(bucket, build(
+                        new TreeMap<>(childFiles.getOrDefault(bucket,
+                                new TreeMap<>())),
+                        new TreeMap<>(childDirs.getOrDefault(bucket,
+                                new TreeMap<>())),
+                        level + 1));
+            }
+        }
+        return new Tree(level, count, children).write();
+    }
+
+    /** Returns the bucket of NAME in a fanout node at LEVEL. */
+    private static int bucket(String name, int level) {
+        int hash = PathFilter.murmur3(name.getBytes(StandardCharsets.UTF_8),
+                SEED);
+        return (hash >>> (level * BUCKET_BITS)) & (FANOUT - 1);
+    }
+
+    /** Stores this tree unless it is already stored, and returns its
+     *  id. */
+    private String write() {
+        String id = Utils.sha1(encode());
+        ObjectStore.writeTree(id, this);
+        return id;
+    }
+
+    /** Returns true if this is a fanout node. */
+    private boolean isFanout() {
+        return _children != null;
+    }
+
+    /** Returns the id of the blob of the file PATH in the tree ID, or null
+     *  if it has no such file. */
+    static String lookup(String id, String path) {
+        int start = 0;
+        for (int k = path.indexOf(SEPARATOR); k >= 0;
+             k = path.indexOf(SEPARATOR, start)) {
+            id = find(id, path.substring(start, k), true);
+            if (id == null) {
+                return null;
+            }
+            start = k + 1;
+        }
+        return find(id, path.substring(start), false);
+    }
+
+    /** Returns the id of the subdirectory NAME of the directory ID if DIR,
+     *  and otherwise the blob id of its file NAME, or null if there is
+     *  none. */
+    private static String find(String id, String name, boolean dir) {
+        Tree node = ObjectStore.readTree(id);
+        while (node.isFanout()) {
+            String child = node._children.get(bucket(name, node._level));
+            if (child == null) {
+                return null;
+            }
+            node = ObjectStore.readTree(child);
+        }
+        return (dir ? node._dirs : node._files).get(name);
+    }
+
+    /** Adds the files of the node ID, and of the nodes under it, to FILES
+     *  and its subdirectories to DIRS. */
+    private static void entries(String id, Map<String, String> files,
+                                Map<String, String> dirs) {
+        Tree node = ObjectStore.readTree(id);
+        if (node.isFanout()) {
+            for (String child : node._children.values()) {
+                entries(child, files, dirs);
+            }
+        } else {
+            files.putAll(node._files);
+            dirs.putAll(node._dirs);
+        }
+    }
+
+    /** Adds to INTO the path, starting with PREFIX, of every file whose
+     *  blob differs between the trees ID1 and ID2, either of which may be
+     *  null for an empty tree. Subtrees and fanout children with equal ids
+     *  are skipped, so the cost depends on how much differs rather than on
+     *  the size of the trees. */
+    static void diff(String id1, String id2, String prefix,
+                     List<String> into) {
+        if (id1 == null ? id2 == null : id1.equals(id2)) {
+            return;
+        }
+        Tree node1 = (id1 == null) ? null : ObjectStore.readTree(id1);
+        Tree node2 = (id2 == null) ? null : ObjectStore.readTree(id2);
+        if (node1 != null && node2 != null && node1.isFanout()
+            && node2.isFanout()) {
+            TreeSet<Integer> buckets = new TreeSet<>(node1._children.keySet());
+            buckets.addAll(node2._children.keySet());
+            for (int bucket : buckets) {
+                diff(node1._children.get(bucket),
+                     node2._children.get(bucket), prefix, into);
+            }
+            return;
+        }
+        TreeMap<String, String> files1 = new TreeMap<>();
+        TreeMap<String, String> dirs1 = new TreeMap<>();
+        TreeMap<String, String> files2 = new TreeMap<>();
+        TreeMap<String, String> dirs2 = new TreeMap<>();
+        if (id1 != null) {
+            entries(id1, files1, dirs1);
+        }
+        if (id2 != null) {
+            entries(id2, files2, dirs2);
+        }
+        TreeSet<String> names = new TreeSet<>(files1.keySet());
+        names.addAll(files2.keySet());
+        for (String name : names) {
+            String blob1 = files1.get(name);
+            if (blob1 == null || !blob1.equals(files2.get(name))) {
+                into.add(prefix + name);
+            }
+        }
+        TreeSet<String> dirs = new TreeSet<>(dirs1.keySet());
+        dirs.addAll(dirs2.keySet());
+        for (String name : dirs) {
+            diff(dirs1.get(name), dirs2.get(name),
+                 prefix + name + SEPARATOR, into);
+        }
+    }
+
+    /** Adds ID and the ids of the nodes and subtrees under it to TREES,
+     *  and adds the blob id of each file in it to the set in BLOBS for the
+     *  path of the file, which starts with PREFIX. A subtree may appear at
+     *  more than one path, so it is skipped only where it has been read at
+     *  the same path before, which SEEN records. */
+    static void collect(String id, String prefix, Set<String> trees,
+                        Set<String> seen, Map<String, Set<String>> blobs) {
+        if (!seen.add(prefix + id)) {
+            return;
+        }
+        trees.add(id);
+        Tree node = ObjectStore.readTree(id);
+        if (node.isFanout()) {
+            for (String child : node._children.values()) {
+                collect(child, prefix, trees, seen, blobs);
+            }
+            return;
+        }
+        for (Map.Entry<String, String> entry : node._files.entrySet()) {
+            blobs.computeIfAbsent(prefix + entry.getKey(),
+                    x -> new LinkedHashSet<>())
+                .add(entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : node._dirs.entrySet()) {
+            collect(entry.getValue(), prefix + entry.getKey() + SEPARATOR,
+                    trees, seen, blobs);
+        }
+    }
+
+    /** Files listed by this node, mapped to the ids of their blobs, or
+     *  null for a fanout node. */
+    private final TreeMap<String, String> _files;
+
+    /** Subdirectories listed by this node, mapped to the ids of their
+     *  trees, or null for a fanout node. */
+    private final TreeMap<String, String> _dirs;
+
+    /** Level of this node if it is a fanout node: 0 for the root node of
+     *  a directory, and one more for each fanout node above it. */
+    private final int _level;
+
+    /** Number of entries in this node and the nodes under it. */
+    private final int _count;
+
+    /** Children of this fanout node, by bucket, or null if it lists its
+     *  entries itself. */
+    private final TreeMap<Integer, String> _children;
+}
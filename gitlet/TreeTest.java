@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.run;
+
+/** Tests that Trees are canonical: the same files give the same id
+ *  however they were added and removed, across splits of large
+ *  directories into fanout nodes and merges back. Trees are written to
+ *  the object store of the working directory, so they are built by
+ *  running Builder in a temporary directory.
+ *  @author Edan Bash
+ */
+public class TreeTest {
+
+    /** Builds a Tree in a fresh object store in the working directory. */
+    static class Builder {
+        /** Starting from no files, applies each of ARGS in turn to the
+         *  Tree with Tree.update and prints the id of the result. Each
+         *  holds changes separated by commas: a path to add after "+", or
+         *  one to remove after "-". Each file added holds the blob whose
+         *  id is the hash of its path. */
+        public static void main(String... args) {
+            ObjectStore.OBJECTS.mkdirs();
+            String id = null;
+            for (String arg : args) {
+                HashMap<String, String> adds = new HashMap<>();
+                Set<String> removes = new HashSet<>();
+                for (String change : arg.split(",")) {
+                    String path = change.substring(1);
+                    if (change.charAt(0) == '+') {
+                        adds.put(path, Utils.sha1(path));
+                    } else {
+                        removes.add(path);
+                    }
+                }
+                id = Tree.update(id, adds, removes);
+            }
+            System.out.print(id);
+        }
+    }
+
+    /** Number of files in the large directory built. */
+    private static final int FILES = 1000;
+
+    /** Number of files changed at once in the changes made one batch at
+     *  a time. */
+    private static final int BATCH = 37;
+
+    /** Returns the id of the Tree made by the batches of CHANGES, each a
+     *  path after "+" or "-", taken BATCHSIZE at a time, built in DIR. */
+    private static String build(File dir, List<String> changes,
+                                int batchSize) throws IOException {
+        List<String> batches = new ArrayList<>();
+        for (int i = 0; i < changes.size(); i += batchSize) {
+            batches.add(String.join(",", changes.subList(i,
+                    Math.min(changes.size(), i + batchSize))));
+        }
+        String id = run(dir, Builder.class, batches.toArray(new String[0]));
+        assertTrue(id, id.matches("[0-9a-f]{40}"));
+        return id;
+    }
+
+    /** Returns the changes adding the paths in PATHS. */
+    private static List<String> adding(List<String> paths) {
+        List<String> result = new ArrayList<>();
+        for (String path : paths) {
+            result.add("+" + path);
+        }
+        return result;
+    }
+
+    @Test
+    public void idsDependOnlyOnFiles() throws IOException {
+        inTempDir(dir -> {
+            List<String> paths = new ArrayList<>();
+            for (int i = 0; i < FILES; i += 1) {
+                paths.add("big/file" + i);
+            }
+            paths.add("top.txt");
+            paths.add("small/one.txt");
+            String all = build(dir, adding(paths), paths.size());
+
+            Collections.shuffle(paths, new Random(0));
+            assertEquals(all, build(dir, adding(paths), BATCH));
+
+            List<String> changes = adding(paths);
+            List<String> extra = new ArrayList<>();
+            for (int i = 0; i < FILES / 2; i += 1) {
+                extra.add("big/extra" + i);
+                extra.add("more/extra" + i);
+            }
+            changes.addAll(0, adding(extra));
+            for (String path : extra) {
+                changes.add("-" + path);
+            }
+            assertEquals(all, build(dir, changes, BATCH));
+        });
+    }
+
+    @Test
+    public void mergesFanoutNodesBack() throws IOException {
+        inTempDir(dir -> {
+            List<String> kept = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            for (int i = 0; i < FILES; i += 1) {
+                (i < Tree.MAX_ENTRIES / 2 ? kept : removed).add("d/f" + i);
+            }
+            String small = build(dir, adding(kept), kept.size());
+            List<String> changes = adding(removed);
+            changes.addAll(adding(kept));
+            for (String path : removed) {
+                changes.add("-" + path);
+            }
+            assertEquals(small, build(dir, changes, BATCH));
+            assertEquals(small, build(dir, changes, Tree.MAX_ENTRIES));
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** A map from names to ids that can undo the changes made to it since it
+ *  was last marked. The first time each key is changed after a mark, its
+ *  value before is recorded, so marking is free and undoing costs only as
+ *  much as the number of keys changed. Only put, putAll, remove and clear
+ *  are recorded; the map must not be changed through its views.
+ *  @author Edan Bash
+ */
+class UndoableMap extends HashMap<String, String> {
+
+    /** An empty map. */
+    UndoableMap() {
+    }
+
+    /** A map holding the entries of MAP. */
+    UndoableMap(Map<String, String> map) {
+        super(map);
+    }
+
+    /** Starts recording changes, forgetting those recorded before. */
+    void mark() {
+        _undo = new HashMap<>();
+    }
+
+    /** Undoes the changes made since the last mark, and starts recording
+     *  afresh. */
+    void undo() {
+        if (_undo == null) {
+            return;
+        }
+        HashMap<String, String> undo = _undo;
+        _undo = null;
+        for (Map.Entry<String, String> entry : undo.entrySet()) {
+            if (entry.getValue() == null) {
+                super.remove(entry.getKey());
+            } else {
+                super.put(entry.getKey(), entry.getValue());
+            }
+        }
+        mark();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        record(key);
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> map) {
+        for (String key : map.keySet()) {
+            record(key);
+        }
+        super.putAll(map);
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (key instanceof String) {
+            record((String) key);
+        }
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (String key : keySet()) {
+            record(key);
+        }
+        super.clear();
+    }
+
+    /** Records the value of KEY, unless it has been recorded since the
+     *  last mark or changes are not being recorded. */
+    private void record(String key) {
+        if (_undo != null && !_undo.containsKey(key)) {
+            _undo.put(key, get(key));
+        }
+    }
+
+    /** Value of each key changed since the last mark before its first
+     *  change, or null for keys that were absent, or null if changes are
+     *  not being recorded. */
+    private HashMap<String, String> _undo;
+}
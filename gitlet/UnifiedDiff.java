@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/** Writes the differences between two versions of a file as a unified
+ *  diff, the format of "diff -u" and "git diff": a header naming the
+ *  file, then a hunk for each group of nearby edits found by LineDiff,
+ *  each starting with the lines it covers in both versions and listing
+ *  the lines removed, prefixed by "-", and added, prefixed by "+",
+ *  between up to CONTEXT unchanged lines, prefixed by a space. Each hunk
+ *  is written as soon as it is made, so a large diff is never held in
+ *  memory. Files with a zero byte near their start are taken to be
+ *  binary and only reported as differing.
+ *  @author Edan Bash
+ */
+class UnifiedDiff {
+
+    /** Number of unchanged lines shown around each change. */
+    private static final int CONTEXT = 3;
+
+    /** Number of bytes at the start of a file searched for a zero byte
+     *  to tell whether it is binary. */
+    private static final int BINARY_CHECK = 8000;
+
+    /** Stands for the path of a file that does not exist. */
+    private static final String NO_FILE = "/dev/null";
+
+    /** Follows a last line that lacks a newline. */
+    private static final byte[] NO_NEWLINE =
+        "\n\\ No newline at end of file\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Writes to OUT the diff of the file PATH from BEFORE to AFTER, the
+     *  contents of its two versions, either of which is null if the file
+     *  is absent from that version. Writes nothing if they are equal. */
+    static void write(OutputStream out, String path, byte[] before,
+                      byte[] after) {
+        if (before != null && after != null && Arrays.equals(before, after)) {
+            return;
+        }
+        String from = (before == null) ? NO_FILE : "a/" + path;
+        String to = (after == null) ? NO_FILE : "b/" + path;
+        print(out, "diff --git a/" + path + " b/" + path + "\n");
+        if (before == null) {
+            print(out, "new file\n");
+        } else if (after == null) {
+            print(out, "deleted file\n");
+        }
+        byte[] a = (before == null) ? new byte[0] : before;
+        byte[] b = (after == null) ? new byte[0] : after;
+        if (binary(a) || binary(b)) {
+            print(out, "Binary files " + from + " and " + to + " differ\n");
+            return;
+        }
+        print(out, "--- " + from + "\n+++ " + to + "\n");
+        LineDiff.Lines x = new LineDiff.Lines(a);
+        LineDiff.Lines y = new LineDiff.Lines(b);
+        List<LineDiff.Edit> edits = LineDiff.diff(x, y);
+        int first = 0;
+        while (first < edits.size()) {
+            int last = first;
+            while (last + 1 < edits.size()
+                   && edits.get(last + 1).getBeginA()
+                   - edits.get(last).getEndA() <= 2 * CONTEXT) {
+                last += 1;
+            }
+            hunk(out, x, y, edits.subList(first, last + 1));
+            first = last + 1;
+        }
+    }
+
+    /** Writes to OUT the hunk of the diff from X to Y showing EDITS, with
+     *  the unchanged lines around and between them. */
+    private static void hunk(OutputStream out, LineDiff.Lines x,
+                             LineDiff.Lines y, List<LineDiff.Edit> edits) {
+        LineDiff.Edit first = edits.get(0);
+        LineDiff.Edit last = edits.get(edits.size() - 1);
+        int beginA = Math.max(0, first.getBeginA() - CONTEXT);
+        int endA = Math.min(x.size(), last.getEndA() + CONTEXT);
+        int beginB = first.getBeginB() - (first.getBeginA() - beginA);
+        int endB = last.getEndB() + (endA - last.getEndA());
+        print(out, "@@ -" + range(beginA, endA) + " +" + range(beginB, endB)
+              + " @@\n");
+        int pos = beginA;
+        for (LineDiff.Edit edit : edits) {
+            lines(out, ' ', x, pos, edit.getBeginA());
+            lines(out, '-', x, edit.getBeginA(), edit.getEndA());
+            lines(out, '+', y, edit.getBeginB(), edit.getEndB());
+            pos = edit.getEndA();
+        }
+        lines(out, ' ', x, pos, endA);
+    }
+
+    /** Returns the lines from BEGIN to END as written in a hunk header:
+     *  the number of the first, counting from 1, and how many there are
+     *  unless there is just one. An empty range is given by the number of
+     *  the line before it. */
+    private static String range(int begin, int end) {
+        if (end - begin == 1) {
+            return Integer.toString(begin + 1);
+        }
+        return ((begin == end) ? begin : begin + 1) + "," + (end - begin);
+    }
+
+    /** Writes to OUT the lines of LINES from BEGIN to END, each after
+     *  PREFIX. */
+    private static void lines(OutputStream out, char prefix,
+                              LineDiff.Lines lines, int begin, int end) {
+        for (int i = begin; i < end; i += 1) {
+            print(out, String.valueOf(prefix));
+            lines.write(out, i, i + 1);
+            if (!lines.endsWithNewline(i)) {
+                write(out, NO_NEWLINE);
+            }
+        }
+    }
+
+    /** Returns true if DATA has a zero byte in its first BINARY_CHECK
+     *  bytes. */
+    private static boolean binary(byte[] data) {
+        for (int i = 0; i < Math.min(data.length, BINARY_CHECK); i += 1) {
+            if (data[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Writes TEXT to OUT. */
+    private static void print(OutputStream out, String text) {
+        write(out, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Writes BYTES to OUT. */
+    private static void write(OutputStream out, byte[] bytes) {
+        try {
+            out.write(bytes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.run;
+
+/** Tests of UnifiedDiff and of the diff command.
+ *  @author Edan Bash
+ */
+public class UnifiedDiffTest {
+
+    /** Returns the diff of the file PATH from BEFORE to AFTER, either of
+     *  which is null if the file is absent. */
+    private static String diff(String path, String before, String after) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UnifiedDiff.write(out, path, bytes(before), bytes(after));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Returns the bytes of TEXT, or null if it is null. */
+    private static byte[] bytes(String text) {
+        return (text == null) ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the lines numbered from 1 to SIZE, each holding its
+     *  number, with the lines numbered in CHANGED replaced by "x". */
+    private static String numbers(int size, int... changed) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i <= size; i += 1) {
+            boolean replaced = false;
+            for (int k : changed) {
+                replaced |= i == k;
+            }
+            result.append(replaced ? "x" : Integer.toString(i)).append('\n');
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void writesHunkHeaders() {
+        assertEquals("", diff("f", "a\n", "a\n"));
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ b/f\n"
+                     + "@@ -1,3 +1,3 @@\n a\n-b\n+B\n c\n",
+                     diff("f", "a\nb\nc\n", "a\nB\nc\n"));
+        assertEquals("diff --git a/f b/f\nnew file\n--- /dev/null\n"
+                     + "+++ b/f\n@@ -0,0 +1,2 @@\n+a\n+b\n",
+                     diff("f", null, "a\nb\n"));
+        assertEquals("diff --git a/f b/f\ndeleted file\n--- a/f\n"
+                     + "+++ /dev/null\n@@ -1 +0,0 @@\n-a\n",
+                     diff("f", "a\n", null));
+        assertEquals("diff --git a/f b/f\n"
+                     + "Binary files a/f and b/f differ\n",
+                     diff("f", "a\0", "b\0"));
+    }
+
+    @Test
+    public void mergesNearbyHunks() {
+        String header = "diff --git a/f b/f\n--- a/f\n+++ b/f\n";
+        assertEquals(header + "@@ -2,14 +2,14 @@\n 2\n 3\n 4\n-5\n+x\n"
+                     + " 6\n 7\n 8\n 9\n 10\n 11\n-12\n+x\n 13\n 14\n 15\n",
+                     diff("f", numbers(20), numbers(20, 5, 12)));
+        assertEquals(header + "@@ -2,7 +2,7 @@\n 2\n 3\n 4\n-5\n+x\n"
+                     + " 6\n 7\n 8\n@@ -10,7 +10,7 @@\n 10\n 11\n 12\n"
+                     + "-13\n+x\n 14\n 15\n 16\n",
+                     diff("f", numbers(20), numbers(20, 5, 13)));
+        assertEquals(header + "@@ -1,4 +1,4 @@\n-1\n+x\n 2\n 3\n 4\n"
+                     + "@@ -17,4 +17,4 @@\n 17\n 18\n 19\n-20\n+x\n",
+                     diff("f", numbers(20), numbers(20, 1, 20)));
+    }
+
+    @Test
+    public void marksMissingNewlineAtEnd() {
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ b/f\n"
+                     + "@@ -1,2 +1,2 @@\n a\n-b\n"
+                     + "\\ No newline at end of file\n+b\n",
+                     diff("f", "a\nb", "a\nb\n"));
+    }
+
+    @Test
+    public void diffsWorkingFilesStagedFilesAndCommits() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            File file = new File(dir, "f");
+            Utils.writeContents(file, "a\nb\n");
+            run(dir, "add", "f");
+            run(dir, "commit", "first");
+            String first = run(dir, "log").split("\n")[1].substring(7);
+
+            Utils.writeContents(file, "a\nB\n");
+            String change = "diff --git a/f b/f\n--- a/f\n+++ b/f\n"
+                + "@@ -1,2 +1,2 @@\n a\n-b\n+B\n";
+            assertEquals(change, run(dir, "diff"));
+            assertEquals("", run(dir, "diff", "--cached"));
+
+            run(dir, "add", "f");
+            assertEquals("", run(dir, "diff"));
+            assertEquals(change, run(dir, "diff", "--cached"));
+
+            run(dir, "commit", "second");
+            String second = run(dir, "log").split("\n")[1].substring(7);
+            assertEquals(change, run(dir, "diff", first, second));
+            assertEquals("", run(dir, "diff", second, second));
+            assertEquals("No commit with that id exists.\n",
+                         run(dir, "diff", first, "0123abcd"));
+        });
+    }
+}
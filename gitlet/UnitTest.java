@@ -12,7 +12,21 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class,
+                                       UpgradeTest.class,
+                                       PackTest.class,
+                                       CommitIndexTest.class,
+                                       MergeBaseTest.class,
+                                       PathFilterTest.class,
+                                       BitmapsTest.class,
+                                       MessageIndexTest.class,
+                                       CodecTest.class,
+                                       BatchTest.class,
+                                       TreeTest.class,
+                                       LineDiffTest.class,
+                                       Diff3Test.class,
+                                       UnifiedDiffTest.class,
+                                       CheckoutTest.class));
     }
 
     /** A dummy test to avoid complaint. */
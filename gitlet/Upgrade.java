@@ -0,0 +1,346 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/** Checks the layout of a repo, converting repos made by the first
+ *  version of Gitlet, which this one cannot read as they are. Repos record
+ *  the version of their layout in .gitlet/format, and those with a
+ *  version this one does not know are refused. A repo without that file
+ *  was made by the first version.
+ *
+ *  The first version kept all its state in files serialized the Java way:
+ *  every commit, holding its parent commits and the contents of its
+ *  files, in one map in .gitlet/commits, the branch heads, staging areas
+ *  and head commit likewise, and the Repository itself in .gitlet/repo.
+ *  Its commits are rebuilt in the object store from their messages,
+ *  times, parents and files, parents first, and the state files are
+ *  rewritten to name the rebuilt commits, which have new ids, as ids are
+ *  hashes of what commits hold. Its Commit and Blob objects are read into
+ *  the frozen copies of those classes kept here, as the classes of the
+ *  same names have changed since.
+ *  @author Edan Bash
+ */
+class Upgrade {
+
+    /** Version of the layout of the repos this version of Gitlet makes. */
+    static final int FORMAT = 1;
+
+    /** Pattern of the dates of the first version's commits. YYYY is the
+     *  week-based year, which differs from the year in the first and last
+     *  days of some years. */
+    static final String DATE_PATTERN = "EEE MMM dd HH:mm:ss YYYY Z";
+
+    /** Directory of the repo. */
+    private static final File GITLET = Utils.join(Main.CWD, ".gitlet");
+
+    /** File holding the version of the layout of the repo. */
+    private static final File FORMAT_FILE = Utils.join(GITLET, "format");
+
+    /** File holding the Repository object in repos made by the first
+     *  version. */
+    private static final File REPO = Utils.join(GITLET, "repo");
+
+    /** File holding the map of every commit in repos made by the first
+     *  version, and now the list of commit ids. */
+    private static final File COMMITS = Utils.join(GITLET, "commits");
+
+    /** File holding the staging area for addition. */
+    private static final File ADDSTAGE = Utils.join(GITLET, "addStage");
+
+    /** File holding the staging area for removal. */
+    private static final File RMSTAGE = Utils.join(GITLET, "rmStage");
+
+    /** File holding the branch heads. */
+    private static final File BRANCHES = Utils.join(GITLET, "branches");
+
+    /** File holding the head commit, now by id. */
+    private static final File HEAD = Utils.join(GITLET, "head");
+
+    /** Suffix of the names of the files written in place of the state
+     *  files before they are renamed over them. */
+    private static final String NEW = ".new";
+
+    /** Name of the first version's Commit class. */
+    private static final String COMMIT_CLASS = "gitlet.Commit";
+
+    /** Name of the first version's Blob class. */
+    private static final String BLOB_CLASS = "gitlet.Blob";
+
+    /** A commit as the first version serialized it. */
+    private static class OldCommit implements Serializable {
+        /** Log message. */
+        private String _logMessage;
+        /** Parent, or null. */
+        private OldCommit _parent;
+        /** Blobs of the tracked files, by name. */
+        private HashMap<String, OldBlob> _blobs;
+        /** Date made, as getDate printed it. */
+        private String _date;
+        /** Merge parent, or null. */
+        private OldCommit _mergeParent;
+        /** Id. */
+        private String _hashcode;
+    }
+
+    /** A blob as the first version serialized it. */
+    private static class OldBlob implements Serializable {
+        /** Name. */
+        private String _name;
+        /** Contents. */
+        private String _content;
+    }
+
+    /** Reads what the first version serialized, reading its Commit and
+     *  Blob objects as OldCommits and OldBlobs. Objects whose fields are
+     *  not those of the first version's are refused. */
+    private static class OldInput extends ObjectInputStream {
+        /** Reads the objects serialized in DATA. */
+        OldInput(byte[] data) throws IOException {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+            throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            Class<?> old = null;
+            if (desc.getName().equals(COMMIT_CLASS)) {
+                old = OldCommit.class;
+            } else if (desc.getName().equals(BLOB_CLASS)) {
+                old = OldBlob.class;
+            }
+            if (old == null) {
+                return desc;
+            }
+            ObjectStreamClass local = ObjectStreamClass.lookup(old);
+            if (!fields(desc).equals(fields(local))) {
+                throw new InvalidClassException(desc.getName(),
+                                                "unknown fields");
+            }
+            return local;
+        }
+
+        /** Returns the names and types of the serialized fields of
+         *  DESC. */
+        private static List<String> fields(ObjectStreamClass desc) {
+            List<String> result = new ArrayList<>();
+            for (ObjectStreamField field : desc.getFields()) {
+                result.add(field.getName() + " " + field.getTypeCode());
+            }
+            return result;
+        }
+    }
+
+    /** Checks the layout of the repo in .gitlet, converting it first if it
+     *  was made by the first version, and throws a GitletException if it
+     *  is one this version cannot read. Only the version in .gitlet/format
+     *  is read unless the repo was made before that file. */
+    static void check() {
+        if (FORMAT_FILE.isFile()) {
+            String version = Utils.readContentsAsString(FORMAT_FILE).trim();
+            if (!version.equals(Integer.toString(FORMAT))) {
+                throw new GitletException("Unsupported repository format: "
+                        + "version " + version + ".");
+            }
+        } else if (HEAD.isFile()) {
+            try {
+                new Upgrade().convert();
+            } catch (IllegalArgumentException | ClassCastException excp) {
+                throw new GitletException("Unsupported repository format: "
+                        + excp.getMessage());
+            }
+            writeFormat();
+        }
+    }
+
+    /** Records that the repo in .gitlet has the layout of this version. */
+    static void writeFormat() {
+        Utils.writeContents(FORMAT_FILE, Integer.toString(FORMAT));
+    }
+
+    /** Returns the time in milliseconds of DATE, as the first version
+     *  formatted it with DATE_PATTERN in this locale or in English. The
+     *  week-based year it names is one off the year for some dates at the
+     *  turn of a year, so the years either side are tried too. */
+    static long parseDate(String date) {
+        String zone = date.substring(date.lastIndexOf(' ') + 1);
+        for (Locale locale : new Locale[] {Locale.getDefault(), Locale.US}) {
+            DateFormat check = new SimpleDateFormat(DATE_PATTERN, locale);
+            check.setTimeZone(TimeZone.getTimeZone("GMT" + zone));
+            Calendar calendar = Calendar.getInstance(check.getTimeZone());
+            try {
+                calendar.setTime(new SimpleDateFormat(
+                        DATE_PATTERN.replace('Y', 'y'), locale).parse(date));
+            } catch (ParseException excp) {
+                continue;
+            }
+            long time = calendar.getTimeInMillis();
+            for (int offset : new int[] {0, -1, 1}) {
+                calendar.setTimeInMillis(time);
+                calendar.add(Calendar.YEAR, offset);
+                if (check.format(calendar.getTime()).equals(date)) {
+                    return calendar.getTimeInMillis();
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unreadable date: " + date);
+    }
+
+    /** Converts the repo made by the first version in .gitlet. All of its
+     *  state is read before anything is written. */
+    private void convert() {
+        HashMap<?, ?> commits = (HashMap<?, ?>) read(COMMITS);
+        HashMap<?, ?> branches = (HashMap<?, ?>) read(BRANCHES);
+        OldCommit head = (OldCommit) read(HEAD);
+        HashMap<?, ?> addStage = (HashMap<?, ?>) read(ADDSTAGE);
+        HashMap<?, ?> rmStage = (HashMap<?, ?>) read(RMSTAGE);
+
+        ObjectStore.OBJECTS.mkdir();
+        for (Object commit : commits.values()) {
+            rebuild((OldCommit) commit);
+        }
+        HashMap<String, String> newBranches = new HashMap<>();
+        for (Map.Entry<?, ?> entry : branches.entrySet()) {
+            newBranches.put((String) entry.getKey(),
+                            rebuild((OldCommit) entry.getValue()));
+        }
+        replaceState(newBranches, rebuild(head), contents(addStage),
+                     contents(rmStage));
+    }
+
+    /** Replaces the state files of the repo with ones naming the rebuilt
+     *  commits: the branch heads BRANCHES, the head commit HEADID and the
+     *  staging areas ADDSTAGE and RMSTAGE, and the list of commits. Each
+     *  is written under another name and only renamed over the old one
+     *  once all have been written, the head file last, so that a
+     *  conversion that fails part way leaves the repo as it was. */
+    private void replaceState(HashMap<String, String> branches,
+                              String headID,
+                              HashMap<String, String> addStage,
+                              HashMap<String, String> rmStage) {
+        StringBuilder journal = new StringBuilder();
+        for (String id : _order) {
+            journal.append(id).append('\n');
+        }
+        Utils.writeContents(temp(COMMITS), journal.toString());
+        Codec.writeIDs(temp(ADDSTAGE), Codec.STAGE, addStage);
+        Codec.writeIDs(temp(RMSTAGE), Codec.STAGE, rmStage);
+        Codec.writeIDs(temp(BRANCHES), Codec.REFS, branches);
+        Utils.writeContents(temp(HEAD), headID);
+        for (File file : new File[] {COMMITS, ADDSTAGE, RMSTAGE, BRANCHES,
+                                     HEAD}) {
+            if (!temp(file).renameTo(file)) {
+                throw new IllegalArgumentException("Could not replace "
+                        + file.getName() + ".");
+            }
+        }
+        REPO.delete();
+    }
+
+    /** Returns the id of the commit rebuilt from COMMIT, rebuilding those
+     *  of its ancestors not yet rebuilt first. Ancestors are found with an
+     *  explicit stack, as histories can be deeper than the call stack. */
+    private String rebuild(OldCommit commit) {
+        Deque<OldCommit> pending = new ArrayDeque<>();
+        pending.push(commit);
+        while (!pending.isEmpty()) {
+            OldCommit top = pending.peek();
+            if (_ids.containsKey(top._hashcode)) {
+                pending.pop();
+                continue;
+            }
+            boolean ready = true;
+            for (OldCommit parent : new OldCommit[] {top._parent,
+                                                     top._mergeParent}) {
+                if (parent != null && !_ids.containsKey(parent._hashcode)) {
+                    pending.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                pending.pop();
+                make(top);
+            }
+        }
+        return _ids.get(commit._hashcode);
+    }
+
+    /** Stores the commit rebuilt from OLD, whose parents have been
+     *  rebuilt. The files of its parent are only passed as removed when it
+     *  has none, for updateCommit to accept it. */
+    private void make(OldCommit old) {
+        String parent = (old._parent == null) ? null
+            : _ids.get(old._parent._hashcode);
+        Commit commit = new Commit(old._logMessage, parent, null,
+                                   new Date(parseDate(old._date)));
+        if (old._mergeParent != null) {
+            commit.setMergeParent(ObjectStore.readCommit(
+                    _ids.get(old._mergeParent._hashcode)));
+        }
+        HashMap<String, String> files = contents(old._blobs);
+        HashMap<String, String> removed = new HashMap<>();
+        if (files.isEmpty() && parent != null) {
+            for (Object name : old._parent._blobs.keySet()) {
+                removed.put((String) name, null);
+            }
+        }
+        commit.updateCommit(files, removed);
+        ObjectStore.writeCommit(commit);
+        _ids.put(old._hashcode, commit.getHashCode());
+        _order.add(commit.getHashCode());
+    }
+
+    /** Returns the map from paths to ids of blobs holding the contents of
+     *  the first version's blobs in BLOBS, storing those contents. */
+    private static HashMap<String, String> contents(Map<?, ?> blobs) {
+        HashMap<String, String> result = new HashMap<>();
+        for (Map.Entry<?, ?> entry : blobs.entrySet()) {
+            String content = ((OldBlob) entry.getValue())._content;
+            result.put((String) entry.getKey(), ObjectStore.writeBlob(
+                    content.getBytes(StandardCharsets.UTF_8)));
+        }
+        return result;
+    }
+
+    /** Returns the object the first version serialized in FILE. */
+    private static Object read(File file) {
+        try (ObjectInputStream in = new OldInput(Utils.readContents(file))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the file written in place of FILE. */
+    private static File temp(File file) {
+        return new File(file.getPath() + NEW);
+    }
+
+    /** Ids of the rebuilt commits, by the ids the first version gave
+     *  them. */
+    private final HashMap<String, String> _ids = new HashMap<>();
+
+    /** Ids of the rebuilt commits, parents first. */
+    private final List<String> _order = new ArrayList<>();
+}
@@ -0,0 +1,239 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static gitlet.TestUtils.inTempDir;
+import static gitlet.TestUtils.run;
+import static gitlet.TestUtils.read;
+import static gitlet.TestUtils.write;
+
+/** Tests of opening repos made by the first version of Gitlet, which
+ *  are written into a temporary directory by these tests.
+ *  @author Edan Bash
+ */
+public class UpgradeTest {
+
+    /** A commit with the fields the first version serialized. */
+    static class Commit implements Serializable {
+        /** A commit with message LOGMESSAGE and parent PARENT, tracking
+         *  BLOBS, made on DATE, whose id was HASHCODE. */
+        Commit(String logMessage, Commit parent, HashMap<String, Blob> blobs,
+               String date, String hashcode) {
+            _logMessage = logMessage;
+            _parent = parent;
+            _blobs = blobs;
+            _date = date;
+            _hashcode = hashcode;
+        }
+
+        /** Log message. */
+        private String _logMessage;
+        /** Parent. */
+        private Commit _parent;
+        /** Blobs of the tracked files, by name. */
+        private HashMap<String, Blob> _blobs;
+        /** Date made. */
+        private final String _date;
+        /** Merge parent. */
+        private Commit _mergeParent;
+        /** Id. */
+        private String _hashcode;
+    }
+
+    /** A blob with the fields the first version serialized. */
+    static class Blob implements Serializable {
+        /** A blob named NAME holding CONTENT. */
+        Blob(String name, String content) {
+            _name = name;
+            _content = content;
+        }
+
+        /** Name. */
+        private String _name;
+        /** Contents. */
+        private String _content;
+    }
+
+    /** Date of the initial commit, as the first version wrote it. */
+    private static final String EPOCH = "Thu Jan 01 00:00:00 1970 +0000";
+
+    /** Date of a later commit, as the first version wrote it. */
+    private static final String LATER = "Sat Oct 17 01:12:24 2026 +0000";
+
+    /** Milliseconds in an hour. */
+    private static final long HOUR = 60 * 60 * 1000;
+
+    /** Writes into DIR the repo the first version would have made by
+     *  committing a.txt and b.txt to master, branching other off the
+     *  initial commit, staging c.txt and removing b.txt. */
+    private static void writeFirstVersionRepo(File dir) throws IOException {
+        Commit initial = new Commit("initial commit", null, new HashMap<>(),
+                                    EPOCH, "1a78");
+        HashMap<String, Blob> blobs = new HashMap<>();
+        blobs.put("a.txt", new Blob("Blob 0", "one\n"));
+        blobs.put("b.txt", new Blob("Blob 1", "two\n"));
+        Commit first = new Commit("first", initial, blobs, LATER, "12d3");
+        HashMap<String, Commit> commits = new HashMap<>();
+        commits.put("1a78", initial);
+        commits.put("12d3", first);
+        HashMap<String, Commit> branches = new HashMap<>();
+        branches.put("master", first);
+        branches.put("other", initial);
+        HashMap<String, Blob> added = new HashMap<>();
+        added.put("c.txt", new Blob("Blob 2", "three\n"));
+        HashMap<String, Blob> removed = new HashMap<>();
+        removed.put("b.txt", blobs.get("b.txt"));
+
+        File meta = new File(dir, ".gitlet");
+        meta.mkdir();
+        Utils.writeContents(new File(meta, "repo"), serialize("a Repository"));
+        Utils.writeContents(new File(meta, "commits"), serialize(commits));
+        Utils.writeContents(new File(meta, "branches"), serialize(branches));
+        Utils.writeContents(new File(meta, "head"), serialize(first));
+        Utils.writeContents(new File(meta, "addStage"), serialize(added));
+        Utils.writeContents(new File(meta, "rmStage"), serialize(removed));
+        Utils.writeContents(new File(meta, "currBranch"), "master");
+        write(dir, "a.txt", "one\n");
+        write(dir, "c.txt", "three\n");
+    }
+
+    @Test
+    public void upgradesFirstVersionRepo() throws IOException {
+        inTempDir(dir -> {
+            writeFirstVersionRepo(dir);
+            assertEquals("=== Branches ===\n*master\nother\n\n"
+                         + "=== Staged Files ===\nc.txt\n\n"
+                         + "=== Removed Files ===\nb.txt\n\n"
+                         + "=== Modifications Not Staged For Commit ===\n\n"
+                         + "=== Untracked Files ===\n\n",
+                         run(dir, "status"));
+            assertEquals(Integer.toString(Upgrade.FORMAT),
+                         read(dir, ".gitlet/format"));
+            assertFalse(new File(dir, ".gitlet/repo").exists());
+            String[] log = run(dir, "log").split("\n");
+            assertEquals("Date: " + new SimpleDateFormat(Upgrade.DATE_PATTERN)
+                         .format(new Date(Upgrade.parseDate(LATER))), log[2]);
+            assertEquals("first", log[3]);
+            assertEquals("initial commit", log[8]);
+            assertEquals(log[1].substring("commit ".length()) + "\n",
+                         run(dir, "find", "first"));
+            inTempDir(fresh -> {
+                run(fresh, "init");
+                assertEquals("A fresh repo and the upgraded one share "
+                             + "their initial commit",
+                             run(fresh, "log").split("\n")[1], log[6]);
+            });
+
+            run(dir, "commit", "second");
+            run(dir, "checkout", "other");
+            assertFalse(new File(dir, "a.txt").exists());
+            assertFalse(new File(dir, "c.txt").exists());
+            run(dir, "checkout", "master");
+            assertEquals("one\n", read(dir, "a.txt"));
+            assertEquals("three\n", read(dir, "c.txt"));
+            assertFalse(new File(dir, "b.txt").exists());
+        });
+    }
+
+    @Test
+    public void rejectsUnreadableFirstVersionRepo() throws IOException {
+        inTempDir(dir -> {
+            writeFirstVersionRepo(dir);
+            File head = new File(dir, ".gitlet/head");
+            byte[] written = Utils.readContents(head);
+            write(dir, ".gitlet/commits", "garbage");
+            assertTrue(run(dir, "log")
+                       .startsWith("Unsupported repository format"));
+            assertArrayEquals(written, Utils.readContents(head));
+            assertFalse(new File(dir, ".gitlet/format").exists());
+        });
+    }
+
+    @Test
+    public void refusesUnknownFormat() throws IOException {
+        inTempDir(dir -> {
+            run(dir, "init");
+            assertEquals(Integer.toString(Upgrade.FORMAT),
+                         read(dir, ".gitlet/format"));
+            write(dir, ".gitlet/format", Integer.toString(Upgrade.FORMAT + 1));
+            assertEquals("Unsupported repository format: version "
+                         + (Upgrade.FORMAT + 1) + ".\n", run(dir, "status"));
+        });
+    }
+
+    @Test
+    public void parsesDatesAtTurnOfYear() {
+        long[] times = {
+            0, 1735639200000L, 1609459199000L, 1609459200000L,
+            1293753600000L, 1798761599000L
+        };
+        SimpleDateFormat format = new SimpleDateFormat(Upgrade.DATE_PATTERN);
+        for (long time : times) {
+            for (long offset = -2 * HOUR; offset <= 2 * HOUR;
+                 offset += HOUR) {
+                String date = format.format(new Date(time + offset));
+                assertEquals(date, time + offset, Upgrade.parseDate(date));
+            }
+        }
+    }
+
+    /** Returns OBJ serialized the Java way, with the Commit and Blob
+     *  classes here named as the first version's were. */
+    private static byte[] serialize(Serializable obj) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(obj);
+        }
+        byte[] data = bytes.toByteArray();
+        for (String name : new String[] {"Commit", "Blob"}) {
+            data = rename(data, "gitlet.UpgradeTest$" + name,
+                          "gitlet." + name);
+            data = rename(data, "Lgitlet/UpgradeTest$" + name + ";",
+                          "Lgitlet/" + name + ";");
+        }
+        return data;
+    }
+
+    /** Returns DATA with each occurrence of the string FROM, in the form
+     *  DataOutput.writeUTF writes strings, replaced by TO. Class names are
+     *  written in that form in serialization streams. */
+    private static byte[] rename(byte[] data, String from, String to)
+        throws IOException {
+        byte[] old = utf(from);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int i = 0;
+        while (i < data.length) {
+            if (i + old.length <= data.length
+                && Arrays.equals(Arrays.copyOfRange(data, i, i + old.length),
+                                 old)) {
+                result.write(utf(to));
+                i += old.length;
+            } else {
+                result.write(data[i]);
+                i += 1;
+            }
+        }
+        return result.toByteArray();
+    }
+
+    /** Returns S as DataOutput.writeUTF writes it. */
+    private static byte[] utf(String s) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(result)) {
+            out.writeUTF(s);
+        }
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/** Runs per-file work, such as hashing or writing working files, on a
+ *  bounded fork-join pool, created once and shared by every call so that
+ *  a daemon does not start new threads for each command. The number of
+ *  threads is the core.workers setting, where 0 (the default) means one
+ *  per available processor and 1 means doing everything on the calling
+ *  thread.
+ *  @author Edan Bash
+ */
+class Workers {
+
+    /** Largest number of items handled by one task without splitting. */
+    private static final int GRAIN = 16;
+
+    /** Returns the results of applying FN to each of ITEMS, in the same
+     *  order, computed in parallel. If any application throws, one of the
+     *  exceptions thrown is rethrown once all tasks have finished. */
+    static <T, R> List<R> map(List<T> items, Function<T, R> fn) {
+        int threads = threads();
+        if (threads == 1 || items.size() <= GRAIN) {
+            List<R> result = new ArrayList<>(items.size());
+            for (T item : items) {
+                result.add(fn.apply(item));
+            }
+            return result;
+        }
+        Object[] results = new Object[items.size()];
+        pool(threads).invoke(new MapTask<>(items, fn, results, 0,
+                                           items.size()));
+        @SuppressWarnings("unchecked")
+        List<R> result = (List<R>) Arrays.asList(results);
+        return result;
+    }
+
+    /** Returns the number of threads to use. */
+    static int threads() {
+        int threads = Config.get(Config.WORKERS);
+        return (threads == 0) ? Runtime.getRuntime().availableProcessors()
+            : threads;
+    }
+
+    /** Returns the pool shared by all calls of map, with THREADS threads,
+     *  creating it on first use. If core.workers has changed since, as it
+     *  may between the commands of a daemon, a new pool replaces it; the
+     *  old one is left to retire its idle threads itself, since a task may
+     *  still be running on it. */
+    private static synchronized ForkJoinPool pool(int threads) {
+        if (_pool == null || _pool.getParallelism() != threads) {
+            _pool = new ForkJoinPool(threads);
+        }
+        return _pool;
+    }
+
+    /** Applies a function to a range of items, splitting the range in
+     *  two until it is at most GRAIN items long. */
+    private static class MapTask<T, R> extends RecursiveAction {
+        /** A task storing FN applied to ITEMS[LO .. HI-1] into
+         *  RESULTS[LO .. HI-1]. */
+        MapTask(List<T> items, Function<T, R> fn, Object[] results,
+                int lo, int hi) {
+            _items = items;
+            _fn = fn;
+            _results = results;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo <= GRAIN) {
+                for (int i = _lo; i < _hi; i += 1) {
+                    _results[i] = _fn.apply(_items.get(i));
+                }
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new MapTask<>(_items, _fn, _results, _lo, mid),
+                          new MapTask<>(_items, _fn, _results, mid, _hi));
+            }
+        }
+
+        /** Items to apply _fn to. */
+        private final List<T> _items;
+        /** Function to apply. */
+        private final Function<T, R> _fn;
+        /** Array receiving the results. */
+        private final Object[] _results;
+        /** First index of the range. */
+        private final int _lo;
+        /** Index just past the range. */
+        private final int _hi;
+    }
+
+    /** Pool running the tasks of map, or null before its first use. */
+    private static ForkJoinPool _pool;
+}